@@ -0,0 +1,587 @@
+package me.discordbot;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/** BDD compiles a KB into a single reduced ordered binary decision diagram, so that the KB is
+ * paid for once and every query after it is cheap: the query is compiled on its own, entailment
+ * is the check that KB => query is the constant true, and the number of models is counted in
+ * one pass over the nodes of the KB.
+ *
+ * Nodes live in parallel int arrays and are hash-consed through an array-backed unique table,
+ * so two nodes are equal exactly when their ids are. Every operation goes through ite, whose
+ * results are remembered in a direct-mapped computed table. Variables are ordered by the depth
+ * first order in which they first appear in the sentences, which keeps the symbols of a
+ * sentence close together, and sift() can improve the order afterwards.
+ *
+ * The nodes a query creates are dropped once it is answered, so a KB can answer any number of
+ * queries without growing. A BDD is not safe to share between threads.*/
+public class BDD {
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    private static final int TERMINAL = Integer.MAX_VALUE; // level of the two constants, below every variable
+    private static final int MAX_CACHE = 1 << 20;          // entries the computed table grows to, with the nodes
+    static final int SIFT_GROWTH = 2; // sifting stops moving a variable once the KB is this many times its best size
+    private static final int MIN_COLLECT = 1 << 16;        // nodes there must be before garbage is worth collecting
+
+    private final SymbolTable symbols; // the id of a symbol is its variable
+    private int[] level = new int[16]; // position of each variable in the order, 0 at the top
+    private int[] varAt = new int[16]; // variable at each position
+    private int numVars;
+
+    // Node n tests the variable at position nodeLevel[n], and goes to low[n] when it is false and high[n] when it is true
+    private int[] nodeLevel = new int[1 << 10];
+    private int[] low = new int[1 << 10];
+    private int[] high = new int[1 << 10];
+    private int[] next = new int[1 << 10];    // next node in the same bucket of the unique table
+    private int[] buckets = new int[1 << 10]; // first node of each bucket, 0 when empty
+    private int nodeCount;
+    private int collectAt = MIN_COLLECT; // node count at which compiling collects the garbage next
+
+    // The computed table of ite, direct-mapped: a new result simply takes the slot of the old one
+    private int[] cacheF = new int[1 << 10];
+    private int[] cacheG = new int[1 << 10];
+    private int[] cacheH = new int[1 << 10];
+    private int[] cacheResult = new int[1 << 10];
+    private int[] cacheEpoch = new int[1 << 10]; // 0 for entries over kept nodes only, else the epoch they were made in
+    private int epoch = 1;
+
+    private int kept;           // nodes below this id belong to the KB and are never dropped
+    private int kb = TRUE;
+    private int kbVars;         // the variables of the KB, the ones its models are counted over
+    private BigInteger kbModels = BigInteger.ONE;
+
+    // This constructor makes an empty diagram over the symbols, ordered by their ids
+    private BDD(SymbolTable symbols) {
+        this.symbols = symbols;
+        nodeLevel[FALSE] = TERMINAL;
+        nodeLevel[TRUE] = TERMINAL;
+        nodeCount = 2;
+        for (int var = 0; var < symbols.size(); var++) {
+            addVariable(var);
+        }
+    }
+
+    /** Compiles the sentences of a KB into one diagram.
+     * @param kb : A list of string sentences parsed.
+     * @return the compiled KB, ready to answer queries*/
+    public static BDD compile(List<String> kb) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        SymbolTable symbols = new SymbolTable();
+        List<CNFConverter.Expression> sentences = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                CNFConverter.Expression expression = CNFConverter.parseExpression(sentence.trim());
+                intern(expression, symbols); // ids in depth first order are the static order
+                sentences.add(expression);
+            }
+        }
+        timer.stop();
+
+        BDD bdd = new BDD(symbols);
+        timer = Metrics.start(Metrics.Phase.CNF);
+        // The sentences are conjoined like a binary counter adds: two conjunctions of as many
+        // sentences are joined into one, so most conjunctions are between small diagrams instead
+        // of the whole KB so far being rebuilt for every sentence
+        IntList roots = new IntList();
+        IntList weights = new IntList();
+        for (CNFConverter.Expression sentence : sentences) {
+            int root = bdd.build(sentence);
+            int weight = 1;
+            while (!weights.isEmpty() && weights.get(weights.size - 1) == weight) {
+                root = bdd.and(roots.pop(), root);
+                weights.pop();
+                weight *= 2;
+            }
+            roots.add(root);
+            weights.add(weight);
+            if (bdd.nodeCount >= bdd.collectAt) {
+                bdd.collect(roots);
+                bdd.collectAt = Math.max(MIN_COLLECT, 2 * bdd.nodeCount);
+            }
+        }
+        int root = TRUE;
+        while (!roots.isEmpty()) {
+            root = bdd.and(roots.pop(), root);
+        }
+        bdd.kbVars = bdd.numVars;
+        bdd.keep(root);
+        timer.stop();
+        return bdd;
+    }
+
+    /** Using a BDD of the KB, this method returns "YES", followed by the number of models of the
+     * KB where the query is also true, or "NO" if KB does not entail query, as evaluateTT does.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateBDD(List<String> kb, String query) {
+        return compile(kb).ask(query);
+    }
+
+    /** Compiles the KB once and answers every query on it, each answer being the one evaluateBDD
+     * gives for the query alone.
+     * @param kb : A list of string sentences parsed.
+     * @param queries : The queries to check for entailment.
+     * @param results : Receives each query with its answer, in order.*/
+    public static void evaluateBDDBatch(List<String> kb, List<String> queries, BiConsumer<String, String> results) {
+        BDD bdd = compile(kb);
+        for (String query : queries) {
+            results.accept(query, bdd.ask(query));
+        }
+    }
+
+    /** Answers a query on the compiled KB. The count is over the symbols of the KB and of the
+     * query, like the one of evaluateTT.
+     * @param query : The query to check for entailment.
+     * @return "YES: " followed by the number of models, or "NO"*/
+    public String ask(String query) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.SEARCH);
+        try {
+            CNFConverter.Expression expression = CNFConverter.parseExpression(query.trim());
+            BitSet querySymbols = new BitSet();
+            intern(expression, symbols, querySymbols);
+            for (int var = numVars; var < symbols.size(); var++) {
+                addVariable(var); // symbols never seen before go below the ones of the KB
+            }
+
+            // KB entails query if and only if KB => query is true in every model
+            if (!implies(kb, build(expression))) {
+                return "NO";
+            }
+            // The models of the KB all satisfy the query, and symbols only found in the query double them
+            querySymbols.clear(0, kbVars);
+            return "YES: " + kbModels.shiftLeft(querySymbols.cardinality());
+        } finally {
+            drop();
+            timer.stop();
+        }
+    }
+
+    // This method returns the number of models of the KB, over its own symbols
+    public BigInteger modelCount() {
+        return kbModels;
+    }
+
+    // This method returns the number of nodes of the KB, the two constants included
+    public int size() {
+        return size(kb);
+    }
+
+    /** Improves the variable order by sifting. Each variable in turn is moved down to the bottom
+     * of the order and then up to the top, one swap of neighbouring levels at a time, for as long
+     * as the KB stays within SIFT_GROWTH times the smallest size seen, and is left where the KB
+     * was the smallest. Passes over all the variables go on while they make the KB smaller.
+     * @return the number of nodes of the KB after sifting*/
+    public int sift() {
+        int best = size();
+        for (boolean improved = true; improved; ) {
+            improved = false;
+            for (int var = 0; var < kbVars; var++) {
+                int position = level[var];
+                int bestPosition = position;
+                while (position + 1 < kbVars && size() <= SIFT_GROWTH * best) {
+                    swap(position++);
+                    if (size() < best) {
+                        best = size();
+                        bestPosition = position;
+                        improved = true;
+                    }
+                }
+                while (position > 0 && size() <= SIFT_GROWTH * best) {
+                    swap(--position);
+                    if (size() < best) {
+                        best = size();
+                        bestPosition = position;
+                        improved = true;
+                    }
+                }
+                while (position < bestPosition) {
+                    swap(position++);
+                }
+                while (position > bestPosition) {
+                    swap(--position);
+                }
+                keep(kb); // leaves the nodes the swaps made unreachable behind
+            }
+        }
+        return size();
+    }
+
+    /** Swaps the variables at positions i and i + 1. The nodes of the two levels are rewritten in
+     * place so that every node id still stands for the same function, which leaves every other
+     * node as it is: a node of the lower level only moves up, a node of the upper level that does
+     * not depend on the lower variable only moves down, and any other node of the upper level now
+     * tests the lower variable, with two nodes of the upper variable below it.*/
+    private void swap(int i) {
+        IntList upper = new IntList();
+        IntList lower = new IntList();
+        for (int node = 2; node < nodeCount; node++) {
+            if (nodeLevel[node] == i) {
+                upper.add(node);
+            } else if (nodeLevel[node] == i + 1) {
+                lower.add(node);
+            }
+        }
+        // The cofactors of the upper nodes must be read before any node changes
+        int[] cofactors = new int[4 * upper.size];
+        for (int k = 0; k < upper.size; k++) {
+            int node = upper.get(k);
+            cofactors[4 * k] = cofactor(low[node], i + 1, false);
+            cofactors[4 * k + 1] = cofactor(low[node], i + 1, true);
+            cofactors[4 * k + 2] = cofactor(high[node], i + 1, false);
+            cofactors[4 * k + 3] = cofactor(high[node], i + 1, true);
+        }
+        while (nodeCount + 2 * upper.size > nodeLevel.length) {
+            grow(); // before anything is unlinked, as growing links every node again
+        }
+
+        for (int k = 0; k < upper.size; k++) {
+            unlink(upper.get(k));
+        }
+        for (int k = 0; k < lower.size; k++) {
+            int node = lower.get(k);
+            unlink(node);
+            nodeLevel[node] = i;
+            link(node);
+        }
+        for (int k = 0; k < upper.size; k++) {
+            int node = upper.get(k);
+            if (nodeLevel[low[node]] != i && nodeLevel[high[node]] != i) {
+                nodeLevel[node] = i + 1; // its children were not on the lower level, now moved up
+                link(node);
+            }
+        }
+        for (int k = 0; k < upper.size; k++) {
+            int node = upper.get(k);
+            if (nodeLevel[node] == i) {
+                low[node] = node(i + 1, cofactors[4 * k], cofactors[4 * k + 2]);
+                high[node] = node(i + 1, cofactors[4 * k + 1], cofactors[4 * k + 3]);
+                link(node);
+            }
+        }
+
+        int upperVar = varAt[i];
+        varAt[i] = varAt[i + 1];
+        varAt[i + 1] = upperVar;
+        level[varAt[i]] = i;
+        level[upperVar] = i + 1;
+    }
+
+    // Takes a node off its bucket of the unique table
+    private void unlink(int node) {
+        int bucket = hash(nodeLevel[node], low[node], high[node]) & (buckets.length - 1);
+        if (buckets[bucket] == node) {
+            buckets[bucket] = next[node];
+            return;
+        }
+        int before = buckets[bucket];
+        while (next[before] != node) {
+            before = next[before];
+        }
+        next[before] = next[node];
+    }
+
+    // Puts a node at the front of its bucket of the unique table
+    private void link(int node) {
+        int bucket = hash(nodeLevel[node], low[node], high[node]) & (buckets.length - 1);
+        next[node] = buckets[bucket];
+        buckets[bucket] = node;
+    }
+
+    // Makes the node the KB, dropping every other node, and counts its models
+    private void keep(int root) {
+        IntList roots = new IntList();
+        roots.add(root);
+        collect(roots);
+        root = roots.get(0);
+        kb = root;
+        kept = nodeCount;
+        kbModels = count(root, new BigInteger[nodeCount]).shiftLeft(root <= TRUE ? kbVars : nodeLevel[root]);
+    }
+
+    /** Copies the nodes reachable from the roots into fresh arrays, which leaves every other node
+     * behind as garbage, and points the roots to their copies. The computed table is emptied, as
+     * the ids it holds now stand for other nodes.
+     * @param roots : The nodes still in use, updated in place.*/
+    private void collect(IntList roots) {
+        int[] oldLevel = nodeLevel;
+        int[] oldLow = low;
+        int[] oldHigh = high;
+        int[] copied = new int[nodeCount]; // id of the copy of each node, 0 until it is copied
+
+        nodeLevel = new int[1 << 10];
+        low = new int[1 << 10];
+        high = new int[1 << 10];
+        next = new int[1 << 10];
+        buckets = new int[1 << 10];
+        nodeLevel[FALSE] = TERMINAL;
+        nodeLevel[TRUE] = TERMINAL;
+        nodeCount = 2;
+        cacheF = new int[1 << 10];
+        cacheG = new int[1 << 10];
+        cacheH = new int[1 << 10];
+        cacheResult = new int[1 << 10];
+        cacheEpoch = new int[1 << 10];
+        for (int i = 0; i < roots.size; i++) {
+            roots.set(i, relocate(roots.get(i), oldLevel, oldLow, oldHigh, copied));
+        }
+    }
+
+    // Copies a node and the nodes below it out of the old arrays, children first
+    private int relocate(int node, int[] oldLevel, int[] oldLow, int[] oldHigh, int[] copied) {
+        if (node <= TRUE) {
+            return node;
+        }
+        if (copied[node] == 0) {
+            int lowCopy = relocate(oldLow[node], oldLevel, oldLow, oldHigh, copied);
+            int highCopy = relocate(oldHigh[node], oldLevel, oldLow, oldHigh, copied);
+            copied[node] = node(oldLevel[node], lowCopy, highCopy);
+        }
+        return copied[node];
+    }
+
+    // Drops every node made since the KB was kept, taking them off the front of their buckets
+    private void drop() {
+        for (int node = nodeCount - 1; node >= kept; node--) {
+            int bucket = hash(nodeLevel[node], low[node], high[node]) & (buckets.length - 1);
+            while (buckets[bucket] >= kept) {
+                buckets[bucket] = next[buckets[bucket]];
+            }
+        }
+        nodeCount = kept;
+        epoch++; // cached results over dropped nodes are no longer valid
+    }
+
+    // Number of models of the node over the variables at its level and below, down to the ones of the KB
+    private BigInteger count(int node, BigInteger[] counted) {
+        if (node <= TRUE) {
+            return node == TRUE ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        if (counted[node] == null) {
+            counted[node] = count(low[node], counted).shiftLeft(gap(node, low[node]))
+                    .add(count(high[node], counted).shiftLeft(gap(node, high[node])));
+        }
+        return counted[node];
+    }
+
+    // Variables skipped between a node and its child, which can take either value
+    private int gap(int node, int child) {
+        return (child <= TRUE ? kbVars : nodeLevel[child]) - nodeLevel[node] - 1;
+    }
+
+    // Number of nodes reachable from the node, the two constants included
+    private int size(int root) {
+        BitSet seen = new BitSet();
+        seen.set(FALSE);
+        seen.set(TRUE);
+        IntList stack = new IntList();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (!seen.get(node)) {
+                seen.set(node);
+                stack.add(low[node]);
+                stack.add(high[node]);
+            }
+        }
+        return seen.cardinality();
+    }
+
+    // Builds the diagram of an expression, its symbols must already be variables
+    private int build(CNFConverter.Expression expr) {
+        if (expr instanceof CNFConverter.Variable) {
+            return variable(symbols.lookup(((CNFConverter.Variable) expr).name));
+        } else if (expr instanceof CNFConverter.Not) {
+            return ite(build(((CNFConverter.Not) expr).expr), FALSE, TRUE);
+        } else if (expr instanceof CNFConverter.And) {
+            return and(build(((CNFConverter.And) expr).left), build(((CNFConverter.And) expr).right));
+        } else if (expr instanceof CNFConverter.Or) {
+            return ite(build(((CNFConverter.Or) expr).left), TRUE, build(((CNFConverter.Or) expr).right));
+        } else if (expr instanceof CNFConverter.Implies) {
+            return ite(build(((CNFConverter.Implies) expr).left), build(((CNFConverter.Implies) expr).right), TRUE);
+        } else if (expr instanceof CNFConverter.Biconditional) {
+            int right = build(((CNFConverter.Biconditional) expr).right);
+            return ite(build(((CNFConverter.Biconditional) expr).left), right, ite(right, FALSE, TRUE));
+        }
+        throw new IllegalArgumentException("Unknown expression: " + expr);
+    }
+
+    private int and(int f, int g) {
+        return ite(f, g, FALSE);
+    }
+
+    /** If-then-else, the one operation every other one is built from: the node that is g where f
+     * is true and h where f is false.*/
+    int ite(int f, int g, int h) {
+        if (f == TRUE) {
+            return g;
+        }
+        if (f == FALSE) {
+            return h;
+        }
+        if (g == h) {
+            return g;
+        }
+        if (g == TRUE && h == FALSE) {
+            return f;
+        }
+
+        int slot = hash(f, g, h) & (cacheF.length - 1);
+        if (isCached(slot, f, g, h)) {
+            return cacheResult[slot];
+        }
+
+        // Split on the variable that comes first among the three
+        int top = Math.min(nodeLevel[f], Math.min(nodeLevel[g], nodeLevel[h]));
+        int result = node(top,
+                ite(cofactor(f, top, false), cofactor(g, top, false), cofactor(h, top, false)),
+                ite(cofactor(f, top, true), cofactor(g, top, true), cofactor(h, top, true)));
+
+        remember(f, g, h, result);
+        return result;
+    }
+
+    /** Tells if f => g is true in every model, the same as ite(f, g, TRUE) == TRUE but without
+     * making any node, and giving up on the first model of f where g is false.*/
+    private boolean implies(int f, int g) {
+        if (f == FALSE || g == TRUE || f == g) {
+            return true;
+        }
+        if (f == TRUE || g == FALSE) {
+            return false;
+        }
+
+        int slot = hash(f, g, TRUE) & (cacheF.length - 1);
+        if (isCached(slot, f, g, TRUE)) {
+            return cacheResult[slot] == TRUE;
+        }
+        int top = Math.min(nodeLevel[f], nodeLevel[g]);
+        if (!implies(cofactor(f, top, false), cofactor(g, top, false))
+                || !implies(cofactor(f, top, true), cofactor(g, top, true))) {
+            return false; // the whole check fails right away, so only successes are worth remembering
+        }
+        remember(f, g, TRUE, TRUE);
+        return true;
+    }
+
+    private boolean isCached(int slot, int f, int g, int h) {
+        return cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h
+                && (cacheEpoch[slot] == 0 || cacheEpoch[slot] == epoch);
+    }
+
+    private void remember(int f, int g, int h, int result) {
+        int slot = hash(f, g, h) & (cacheF.length - 1);
+        cacheF[slot] = f;
+        cacheG[slot] = g;
+        cacheH[slot] = h;
+        cacheResult[slot] = result;
+        cacheEpoch[slot] = Math.max(Math.max(f, g), Math.max(h, result)) < kept ? 0 : epoch;
+    }
+
+    // The node with the variable at the given level set, which is the node itself if it does not test it
+    private int cofactor(int node, int top, boolean value) {
+        if (nodeLevel[node] != top) {
+            return node;
+        }
+        return value ? high[node] : low[node];
+    }
+
+    // The node of a single variable
+    private int variable(int var) {
+        return node(level[var], FALSE, TRUE);
+    }
+
+    // The unique node testing the level with these children, made if it does not exist yet
+    private int node(int nodeLevelOf, int lowChild, int highChild) {
+        if (lowChild == highChild) {
+            return lowChild; // the test is redundant
+        }
+        int bucket = hash(nodeLevelOf, lowChild, highChild) & (buckets.length - 1);
+        for (int node = buckets[bucket]; node != 0; node = next[node]) {
+            if (nodeLevel[node] == nodeLevelOf && low[node] == lowChild && high[node] == highChild) {
+                return node;
+            }
+        }
+
+        if (nodeCount == nodeLevel.length) {
+            grow();
+        }
+        int node = nodeCount++;
+        nodeLevel[node] = nodeLevelOf;
+        low[node] = lowChild;
+        high[node] = highChild;
+        link(node);
+        return node;
+    }
+
+    // Doubles the node arrays and the unique table, putting newer nodes first in every bucket as before,
+    // and the computed table with them until it reaches its largest size
+    private void grow() {
+        int capacity = nodeLevel.length * 2;
+        nodeLevel = Arrays.copyOf(nodeLevel, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        next = Arrays.copyOf(next, capacity);
+        buckets = new int[capacity];
+        for (int node = 2; node < nodeCount; node++) {
+            link(node);
+        }
+        if (cacheF.length < Math.min(capacity, MAX_CACHE)) {
+            cacheF = new int[capacity]; // f is never a constant, so an empty slot matches nothing
+            cacheG = new int[capacity];
+            cacheH = new int[capacity];
+            cacheResult = new int[capacity];
+            cacheEpoch = new int[capacity];
+        }
+    }
+
+    // Puts a variable at the bottom of the order
+    private void addVariable(int var) {
+        if (var >= level.length) {
+            level = Arrays.copyOf(level, Math.max(level.length * 2, var + 1));
+        }
+        if (numVars == varAt.length) {
+            varAt = Arrays.copyOf(varAt, varAt.length * 2);
+        }
+        level[var] = numVars;
+        varAt[numVars++] = var;
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+        return h ^ (h >>> 15);
+    }
+
+    // Interns every symbol of the expression, from left to right
+    private static void intern(CNFConverter.Expression expr, SymbolTable symbols) {
+        intern(expr, symbols, new BitSet());
+    }
+
+    // Same as intern, also setting the bit of every symbol found
+    private static void intern(CNFConverter.Expression expr, SymbolTable symbols, BitSet found) {
+        if (expr instanceof CNFConverter.Variable) {
+            found.set(symbols.intern(((CNFConverter.Variable) expr).name));
+        } else if (expr instanceof CNFConverter.Not) {
+            intern(((CNFConverter.Not) expr).expr, symbols, found);
+        } else if (expr instanceof CNFConverter.And) {
+            intern(((CNFConverter.And) expr).left, symbols, found);
+            intern(((CNFConverter.And) expr).right, symbols, found);
+        } else if (expr instanceof CNFConverter.Or) {
+            intern(((CNFConverter.Or) expr).left, symbols, found);
+            intern(((CNFConverter.Or) expr).right, symbols, found);
+        } else if (expr instanceof CNFConverter.Implies) {
+            intern(((CNFConverter.Implies) expr).left, symbols, found);
+            intern(((CNFConverter.Implies) expr).right, symbols, found);
+        } else if (expr instanceof CNFConverter.Biconditional) {
+            intern(((CNFConverter.Biconditional) expr).left, symbols, found);
+            intern(((CNFConverter.Biconditional) expr).right, symbols, found);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BDD[symbols=" + kbVars + ", nodes=" + size() + ", models=" + kbModels + "]";
+    }
+}
@@ -1,60 +1,280 @@
 package me.discordbot;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 public class BackwardChaining {
 
-    private static Set<String> visitedPremises = new HashSet<>(); // Set of visited premises
-
     /** Using Backward Chaining algorithm, this method returns "YES",
-     * followed by the list of propositional symbols entailed from KB that has been
-     * found during the execution of the FC algorithm.
+     * followed by the list of propositional symbols that have been looked at
+     * during the execution of the BC algorithm.
      * @param facts : A set of string that contains all the fact obtained from the input.
      * @param rules : A list of Rules obtained from the input file.
-     * @param visited: A set of visited premises to identify symbols that are previously looked at.
+     * @param visited: A set of premises that are already being proven, which count as not provable.
      * @param query : The query needed for evaluation of entailment.
      * @return a string that indicates if query is entailed by KB with YES and NO*/
     public static String evaluateBC(Set<String> facts, List<Rule> rules, Set<String> visited, String query) {
-        visitedPremises.add(query);
+        HornKB kb = HornKB.compile(facts, rules);
+
+        BitSet visitedIds = new BitSet(kb.symbolCount);
+        for (String symbol : visited) {
+            int id = kb.symbols.lookup(symbol);
+            if (id >= 0) {
+                visitedIds.set(id);
+            }
+        }
+
+        return evaluateBC(kb, visitedIds, query);
+    }
+
+    /** Using Backward Chaining algorithm on a compiled KB, this method returns "YES",
+     * followed by the list of propositional symbols looked at, or "NO".
+     * @param kb : The compiled Horn KB.
+     * @param visited: A bitmap of the symbols that are already being proven, which count as not provable.
+     * @param query : The query needed for evaluation of entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateBC(HornKB kb, BitSet visited, String query) {
+        Context context = new Context(kb);
+        for (int id = visited.nextSetBit(0); id >= 0; id = visited.nextSetBit(id + 1)) {
+            if (!kb.facts.get(id)) {
+                context.status[id] = Context.FAILED; // a fact holds even while it is being proven
+            }
+        }
+        return context.answer(query);
+    }
+
+    /** Using Backward Chaining algorithm on a compiled KB, this method returns "YES",
+     * followed by the list of propositional symbols looked at, or "NO".
+     * @param kb : The compiled Horn KB.
+     * @param query : The query needed for evaluation of entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateBC(HornKB kb, String query) {
+        return new Context(kb).answer(query);
+    }
+
+    /** Answers a batch of queries against the same KB, each answer being the one evaluateBC gives
+     * for the query alone. The queries share one context, whose buffers are reused, and a query
+     * asked again is answered from the answers already given.
+     * @param kb : The compiled Horn KB.
+     * @param queries : The queries needed for evaluation of entailment.
+     * @param results : Receives each query with its answer, in order.*/
+    public static void evaluateBCBatch(HornKB kb, List<String> queries, BiConsumer<String, String> results) {
+        Context context = new Context(kb);
+        String[] answers = new String[kb.symbolCount]; // answer given for each symbol so far
+        for (String query : queries) {
+            int id = kb.symbols.lookup(query);
+            if (id < 0) {
+                results.accept(query, "NO");
+                continue;
+            }
+            if (answers[id] == null) {
+                answers[id] = context.answer(query);
+            }
+            results.accept(query, answers[id]);
+        }
+    }
+
+    /** Context holds the state of backward chaining over one KB, so nothing is shared between
+     * callers and each thread can run its own. Every subgoal is tabled as proven, failed or in
+     * progress, so it is solved at most once: a diamond-shaped KB costs one visit per rule instead
+     * of one per path. A subgoal that fails only because it ran into an ancestor that is still in
+     * progress is not tabled as failed, because that ancestor may still be proven another way; once
+     * the ancestor itself fails for good, everything that waited on it is tabled as failed too.
+     * Proofs are searched with an explicit stack, so long chains cannot overflow the call stack.*/
+    public static class Context {
+        static final byte UNKNOWN = 0;
+        static final byte IN_PROGRESS = 1;
+        static final byte PROVEN = 2;
+        static final byte FAILED = 3;
+
+        private static final int PUSHED = 2; // result of enter() when the goal needs a frame of its own
+
+        final HornKB kb;
+        final byte[] status;      // per symbol
+        final BitSet looked;      // symbols looked at since the last answer
+        private final int[] depth; // stack position of each goal in progress
+
+        // One frame per goal in progress
+        private int[] goals;
+        private int[] ruleCursor;    // position in the goal's concludingRules range
+        private int[] premiseCursor; // next premise of the current rule
+        private int[] low;           // lowest stack position of an in-progress goal the frame ran into
+        private int[] tentativeMark; // size of the tentative list when the frame was pushed
+        private int size;
+
+        private final IntList tentative = new IntList(); // goals that failed only because of a cycle
+
+        private long hits;   // subgoals answered from the table, since the last prove
+        private long misses; // subgoals that needed a frame of their own
 
-        if (facts.contains(query)) {
-            return "YES: " + visitedPremises;
+        public Context(HornKB kb) {
+            this.kb = kb;
+            this.status = new byte[kb.symbolCount];
+            this.looked = new BitSet(kb.symbolCount);
+            this.depth = new int[kb.symbolCount];
+            int capacity = 16;
+            goals = new int[capacity];
+            ruleCursor = new int[capacity];
+            premiseCursor = new int[capacity];
+            low = new int[capacity];
+            tentativeMark = new int[capacity];
         }
 
-        if (visited.contains(query)) {
-            return "NO";
+        /** Answers a query in the same form as evaluateBC. The table is cleared of what the
+         * previous answer put in it first, so the symbols listed never depend on the queries
+         * answered before: they are the ones a new context would list.
+         * @param query : The query needed for evaluation of entailment.
+         * @return a string that indicates if query is entailed by KB with YES and NO*/
+        public String answer(String query) {
+            reset();
+            int id = kb.symbols.lookup(query);
+            return id >= 0 && prove(id) ? "YES: " + kb.symbols.names(looked) : "NO";
         }
 
-        visited.add(query);
+        // Clears the goals looked at since the last reset, which are the only ones the table holds
+        void reset() {
+            for (int id = looked.nextSetBit(0); id >= 0; id = looked.nextSetBit(id + 1)) {
+                status[id] = UNKNOWN;
+            }
+            looked.clear();
+        }
 
-        // Check each rule to see if it supports the query
-        for (Rule rule : rules) {
-            if (rule.conclusion.equals(query)) {
-                boolean allPremisesTrue = true;
+        /** Proves the goal by backward chaining.
+         * @param goal : The id of the symbol to prove.
+         * @return true if the goal is entailed by the KB*/
+        public boolean prove(int goal) {
+            Metrics.Timer timer = Metrics.start(Metrics.Phase.CHAIN);
+            int result = enter(goal, -1);
+
+            while (size > 0) {
+                int top = size - 1;
+                if (result == 0) {
+                    // The premise failed, so does the rule: move on to the next rule
+                    ruleCursor[top]++;
+                    premiseCursor[top] = 0;
+                } else if (result == 1) {
+                    premiseCursor[top]++;
+                }
 
-                // Check each premise recursively
-                for (String premise : rule.premises) {
-                    String result = evaluateBC(facts, rules, visited, premise);
-                    if (result.startsWith("NO")) {
-                        allPremisesTrue = false;
+                result = PUSHED;
+                while (result == PUSHED) {
+                    int g = goals[top];
+                    if (ruleCursor[top] == kb.concludingStart[g + 1]) {
+                        result = finish(top, false);
+                        break;
+                    }
+
+                    int rule = kb.concludingRules[ruleCursor[top]];
+                    int p = kb.premiseStart[rule] + premiseCursor[top];
+                    if (p == kb.premiseStart[rule + 1]) {
+                        result = finish(top, true); // every premise of the rule holds
                         break;
                     }
-                }
 
-                // If all premises are true, the query is true
-                if (allPremisesTrue) {
-                    visited.remove(query); // remove so when a premise is re-evaluated, it does not return false.
-                    return "YES: " + visitedPremises;
+                    result = enter(kb.premises[p], top);
+                    if (result == PUSHED) {
+                        break; // solve the new frame first
+                    } else if (result == 1) {
+                        premiseCursor[top]++;
+                        result = PUSHED;
+                    } else {
+                        ruleCursor[top]++;
+                        premiseCursor[top] = 0;
+                        result = PUSHED;
+                    }
+                }
+                if (result == PUSHED) {
+                    result = -1; // a new frame is on top, nothing to report to it yet
                 }
             }
+
+            Metrics.add(Metrics.Counter.BC_HITS, hits);
+            Metrics.add(Metrics.Counter.BC_MISSES, misses);
+            hits = 0;
+            misses = 0;
+            timer.stop();
+            return result == 1;
         }
 
-        // If no rules support the query, return false
-        visited.remove(query);
-        return "NO";
-    }
+        // Returns 1 or 0 when the goal is already decided, or pushes a frame for it and returns PUSHED
+        private int enter(int goal, int caller) {
+            looked.set(goal);
+            switch (status[goal]) {
+                case PROVEN:
+                    hits++;
+                    return 1;
+                case FAILED:
+                    hits++;
+                    return 0;
+                case IN_PROGRESS:
+                    // A cycle: the goal is not provable on this path, but maybe on another one
+                    low[caller] = Math.min(low[caller], depth[goal]);
+                    return 0;
+                default:
+                    break;
+            }
+            if (kb.facts.get(goal)) {
+                status[goal] = PROVEN;
+                return 1;
+            }
 
+            misses++;
+            if (size == goals.length) {
+                grow();
+            }
+            int frame = size++;
+            goals[frame] = goal;
+            ruleCursor[frame] = kb.concludingStart[goal];
+            premiseCursor[frame] = 0;
+            low[frame] = frame;
+            tentativeMark[frame] = tentative.size;
+            depth[goal] = frame;
+            status[goal] = IN_PROGRESS;
+            return PUSHED;
+        }
 
+        // Pops the frame on top and tables its goal, returning 1 or 0 for the frame below
+        private int finish(int frame, boolean proven) {
+            int goal = goals[frame];
+            size--;
+
+            if (proven) {
+                status[goal] = PROVEN;
+                // Goals that failed because this one was in progress may be provable now
+                for (int i = tentativeMark[frame]; i < tentative.size; i++) {
+                    status[tentative.get(i)] = UNKNOWN;
+                }
+                tentative.size = tentativeMark[frame];
+                return 1;
+            }
+
+            if (low[frame] >= frame) {
+                // Nothing above this goal was involved, so it and everything waiting on it failed for good
+                status[goal] = FAILED;
+                for (int i = tentativeMark[frame]; i < tentative.size; i++) {
+                    status[tentative.get(i)] = FAILED;
+                }
+                tentative.size = tentativeMark[frame];
+            } else {
+                status[goal] = UNKNOWN;
+                tentative.add(goal);
+                if (frame > 0) {
+                    low[frame - 1] = Math.min(low[frame - 1], low[frame]);
+                }
+            }
+            return 0;
+        }
+
+        private void grow() {
+            int capacity = goals.length * 2;
+            goals = Arrays.copyOf(goals, capacity);
+            ruleCursor = Arrays.copyOf(ruleCursor, capacity);
+            premiseCursor = Arrays.copyOf(premiseCursor, capacity);
+            low = Arrays.copyOf(low, capacity);
+            tentativeMark = Arrays.copyOf(tentativeMark, capacity);
+        }
+    }
 }
@@ -9,24 +9,54 @@ class CNFConverter {
 
     static class And extends Expression {
         Expression left, right;
+        private final int hash; // children never change, so the hash is computed once
         And(Expression left, Expression right) {
             this.left = left;
             this.right = right;
+            this.hash = 31 * (31 * 1 + left.hashCode()) + right.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            And other = (And) obj;
+            return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
     static class Or extends Expression {
         Expression left, right;
+        private final int hash; // children never change, so the hash is computed once
         Or(Expression left, Expression right) {
             this.left = left;
             this.right = right;
+            this.hash = 31 * (31 * 2 + left.hashCode()) + right.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Or other = (Or) obj;
+            return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
     static class Not extends Expression {
         Expression expr;
+        private final int hash;
         Not(Expression expr) {
             this.expr = expr;
+            this.hash = Objects.hash(expr);
         }
 
         @Override
@@ -42,23 +72,51 @@ class CNFConverter {
         }
         @Override
         public int hashCode() {
-            return Objects.hash(expr);
+            return hash;
         }
     }
 
     static class Implies extends Expression {
         Expression left, right;
+        private final int hash; // children never change, so the hash is computed once
         Implies(Expression left, Expression right) {
             this.left = left;
             this.right = right;
+            this.hash = 31 * (31 * 3 + left.hashCode()) + right.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Implies other = (Implies) obj;
+            return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
     static class Biconditional extends Expression {
         Expression left, right;
+        private final int hash; // children never change, so the hash is computed once
         Biconditional(Expression left, Expression right) {
             this.left = left;
             this.right = right;
+            this.hash = 31 * (31 * 4 + left.hashCode()) + right.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Biconditional other = (Biconditional) obj;
+            return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
         }
     }
 
@@ -85,141 +143,435 @@ class CNFConverter {
         }
     }
 
+    /** Factory hash-conses expressions: it hands out a single node for every structurally equal
+     * subterm, so a subformula that occurs many times is stored once and two nodes are equal
+     * exactly when they are the same object. It also keeps the memo tables of the conversion
+     * passes, keyed on node identity, so every distinct subterm is converted once per pass even
+     * across all the sentences of a KB converted with the same factory.*/
+    static class Factory {
+        private final Map<Expression, Expression> unique = new HashMap<>();
 
-    static Expression parseExpression(String input) {
-        Stack<Expression> exprStack = new Stack<>();
-        Stack<String> operatorStack = new Stack<>();
-        String[] tokens = input.replaceAll("\\(", " ( ").replaceAll("\\)", " ) ").trim().split("\\s+");
-
-        for (String token : tokens) {
-            switch (token) {
-                case "(":
-                    operatorStack.push(token);
-                    break;
-
-                case ")":
-                    while (!operatorStack.isEmpty() && !operatorStack.peek().equals("(")) {
-                        exprStack.push(buildExpression(operatorStack.pop(), exprStack));
-                    }
-                    operatorStack.pop(); // Pop "("
-                    break;
-
-                case "&":
-                case "||":
-                case "=>":
-                case "<=>":
-                case "~":
-                    operatorStack.push(token);
-                    break;
-
-                default:
-                    exprStack.push(new Variable(token)); // Assume variable
+        final Map<Expression, Expression> biconditionalMemo = new IdentityHashMap<>();
+        final Map<Expression, Expression> implicationMemo = new IdentityHashMap<>();
+        final Map<Expression, Expression> notMemo = new IdentityHashMap<>();
+        final Map<Expression, Expression> distributeMemo = new IdentityHashMap<>();
+        final Map<Expression, Expression> cnfMemo = new IdentityHashMap<>();
+        final Map<Expression, int[]> tseitinMemo = new IdentityHashMap<>(); // literal per polarity -1, 0, 1
+
+        // Returns the unique node equal to the given one
+        Expression intern(Expression expr) {
+            Expression existing = unique.putIfAbsent(expr, expr);
+            return existing == null ? expr : existing;
+        }
+
+        Expression and(Expression left, Expression right) {
+            return intern(new And(left, right));
+        }
+
+        Expression or(Expression left, Expression right) {
+            return intern(new Or(left, right));
+        }
+
+        Expression not(Expression expr) {
+            return intern(new Not(expr));
+        }
+
+        Expression implies(Expression left, Expression right) {
+            return intern(new Implies(left, right));
+        }
+
+        Expression biconditional(Expression left, Expression right) {
+            return intern(new Biconditional(left, right));
+        }
+
+        // Rebuilds a tree made outside the factory out of unique nodes, bottom-up
+        Expression canonical(Expression expr) {
+            if (unique.get(expr) == expr) {
+                return expr; // already one of ours, and so are all of its children
+            }
+            if (expr instanceof And) {
+                return and(canonical(((And) expr).left), canonical(((And) expr).right));
+            } else if (expr instanceof Or) {
+                return or(canonical(((Or) expr).left), canonical(((Or) expr).right));
+            } else if (expr instanceof Not) {
+                return not(canonical(((Not) expr).expr));
+            } else if (expr instanceof Implies) {
+                return implies(canonical(((Implies) expr).left), canonical(((Implies) expr).right));
+            } else if (expr instanceof Biconditional) {
+                return biconditional(canonical(((Biconditional) expr).left), canonical(((Biconditional) expr).right));
             }
+            return intern(expr);
         }
 
-        while (!operatorStack.isEmpty()) {
-            exprStack.push(buildExpression(operatorStack.pop(), exprStack));
+        // This method returns the number of distinct subterms built so far
+        int size() {
+            return unique.size();
         }
+    }
+
 
-        return exprStack.pop();
+    /** Parses a sentence with the shared SentenceParser.
+     * @param input : The sentence.
+     * @return the expression*/
+    static Expression parseExpression(String input) {
+        return parseExpression(input, new SymbolTable());
     }
 
-    static Expression buildExpression(String operator, Stack<Expression> exprStack) {
-        switch (operator) {
-            case "&":
-                return new And(exprStack.pop(), exprStack.pop());
-            case "||":
-                return new Or(exprStack.pop(), exprStack.pop());
-            case "~":
-                return new Not(exprStack.pop());
-            case "=>":
-                Expression right = exprStack.pop();
-                Expression left = exprStack.pop();
-                return new Implies(left, right);
-            case "<=>":
-                right = exprStack.pop();
-                left = exprStack.pop();
-                return new Biconditional(left, right);
-            default:
-                throw new IllegalArgumentException("Unknown operator: " + operator);
-        }
+    /** Same as parseExpression, interning the symbols into the table the clauses will use, so the
+     * names of the Variable nodes are the table's own strings.
+     * @param input : The sentence.
+     * @param symbols : The symbol table.
+     * @return the expression*/
+    static Expression parseExpression(String input, SymbolTable symbols) {
+        return new SentenceParser(symbols).expression(input);
     }
 
     static Expression eliminateBiconditional(Expression expr) {
+        Factory factory = new Factory();
+        return eliminateBiconditional(factory.canonical(expr), factory);
+    }
+
+    static Expression eliminateBiconditional(Expression expr, Factory f) {
+        Expression result = f.biconditionalMemo.get(expr);
+        if (result != null) {
+            return result;
+        }
+
         if (expr instanceof Biconditional) {
             Biconditional biconditional = (Biconditional) expr;
-            Expression leftImpliesRight = new Implies(biconditional.left, biconditional.right);
-            Expression rightImpliesLeft = new Implies(biconditional.right, biconditional.left);
-            return new And(eliminateBiconditional(leftImpliesRight), eliminateBiconditional(rightImpliesLeft));
+            Expression left = eliminateBiconditional(biconditional.left, f);
+            Expression right = eliminateBiconditional(biconditional.right, f);
+            result = f.and(f.implies(left, right), f.implies(right, left));
+        } else if (expr instanceof Implies) {
+            result = f.implies(eliminateBiconditional(((Implies) expr).left, f), eliminateBiconditional(((Implies) expr).right, f));
         } else if (expr instanceof And) {
-            return new And(eliminateBiconditional(((And) expr).left), eliminateBiconditional(((And) expr).right));
+            result = f.and(eliminateBiconditional(((And) expr).left, f), eliminateBiconditional(((And) expr).right, f));
         } else if (expr instanceof Or) {
-            return new Or(eliminateBiconditional(((Or) expr).left), eliminateBiconditional(((Or) expr).right));
+            result = f.or(eliminateBiconditional(((Or) expr).left, f), eliminateBiconditional(((Or) expr).right, f));
         } else if (expr instanceof Not) {
-            return new Not(eliminateBiconditional(((Not) expr).expr));
+            result = f.not(eliminateBiconditional(((Not) expr).expr, f));
+        } else {
+            result = expr;
         }
-        return expr;
+        f.biconditionalMemo.put(expr, result);
+        return result;
     }
 
     static Expression eliminateImplications(Expression expr) {
+        Factory factory = new Factory();
+        return eliminateImplications(factory.canonical(expr), factory);
+    }
+
+    static Expression eliminateImplications(Expression expr, Factory f) {
+        Expression result = f.implicationMemo.get(expr);
+        if (result != null) {
+            return result;
+        }
+
         if (expr instanceof Implies) {
             Implies implies = (Implies) expr;
-            return new Or(new Not(eliminateImplications(implies.left)), eliminateImplications(implies.right));
+            result = f.or(f.not(eliminateImplications(implies.left, f)), eliminateImplications(implies.right, f));
         } else if (expr instanceof And) {
-            return new And(eliminateImplications(((And) expr).left), eliminateImplications(((And) expr).right));
+            result = f.and(eliminateImplications(((And) expr).left, f), eliminateImplications(((And) expr).right, f));
         } else if (expr instanceof Or) {
-            return new Or(eliminateImplications(((Or) expr).left), eliminateImplications(((Or) expr).right));
+            result = f.or(eliminateImplications(((Or) expr).left, f), eliminateImplications(((Or) expr).right, f));
         } else if (expr instanceof Not) {
-            return new Not(eliminateImplications(((Not) expr).expr));
+            result = f.not(eliminateImplications(((Not) expr).expr, f));
+        } else {
+            result = expr;
         }
-        return expr;
+        f.implicationMemo.put(expr, result);
+        return result;
     }
 
     static Expression pushNotInwards(Expression expr) {
+        Factory factory = new Factory();
+        return pushNotInwards(factory.canonical(expr), factory);
+    }
+
+    static Expression pushNotInwards(Expression expr, Factory f) {
+        Expression result = f.notMemo.get(expr);
+        if (result != null) {
+            return result;
+        }
+
+        result = expr;
         if (expr instanceof Not) {
             Expression inner = ((Not) expr).expr;
             if (inner instanceof Not) {
-                return pushNotInwards(((Not) inner).expr);
+                result = pushNotInwards(((Not) inner).expr, f);
             } else if (inner instanceof And) {
-                return new Or(pushNotInwards(new Not(((And) inner).left)),
-                        pushNotInwards(new Not(((And) inner).right)));
+                result = f.or(pushNotInwards(f.not(((And) inner).left), f),
+                        pushNotInwards(f.not(((And) inner).right), f));
             } else if (inner instanceof Or) {
-                return new And(pushNotInwards(new Not(((Or) inner).left)),
-                        pushNotInwards(new Not(((Or) inner).right)));
+                result = f.and(pushNotInwards(f.not(((Or) inner).left), f),
+                        pushNotInwards(f.not(((Or) inner).right), f));
             }
         } else if (expr instanceof And) {
-            return new And(pushNotInwards(((And) expr).left), pushNotInwards(((And) expr).right));
+            result = f.and(pushNotInwards(((And) expr).left, f), pushNotInwards(((And) expr).right, f));
         } else if (expr instanceof Or) {
-            return new Or(pushNotInwards(((Or) expr).left), pushNotInwards(((Or) expr).right));
+            result = f.or(pushNotInwards(((Or) expr).left, f), pushNotInwards(((Or) expr).right, f));
         }
-        return expr;
+        f.notMemo.put(expr, result);
+        return result;
     }
 
     static Expression distributeOrOverAnd(Expression expr) {
+        Factory factory = new Factory();
+        return distributeOrOverAnd(factory.canonical(expr), factory);
+    }
+
+    static Expression distributeOrOverAnd(Expression expr, Factory f) {
+        Expression result = f.cnfMemo.get(expr);
+        if (result != null) {
+            return result;
+        }
+
         if (expr instanceof Or) {
-            Expression left = distributeOrOverAnd(((Or) expr).left);
-            Expression right = distributeOrOverAnd(((Or) expr).right);
-            if (left instanceof And) {
-                return new And(new Or(((And) left).left, right), new Or(((And) left).right, right));
-            } else if (right instanceof And) {
-                return new And(new Or(left, ((And) right).left), new Or(left, ((And) right).right));
-            } else {
-                return new Or(left, right);
-            }
+            result = distribute(distributeOrOverAnd(((Or) expr).left, f), distributeOrOverAnd(((Or) expr).right, f), f);
         } else if (expr instanceof And) {
-            return new And(distributeOrOverAnd(((And) expr).left), distributeOrOverAnd(((And) expr).right));
+            result = f.and(distributeOrOverAnd(((And) expr).left, f), distributeOrOverAnd(((And) expr).right, f));
+        } else {
+            result = expr;
         }
-        return expr;
+        f.cnfMemo.put(expr, result);
+        return result;
+    }
+
+    // This method builds the CNF of (left || right) where both sides are already in CNF
+    static Expression distribute(Expression left, Expression right, Factory f) {
+        Expression or = f.or(left, right);
+        Expression result = f.distributeMemo.get(or);
+        if (result != null) {
+            return result;
+        }
+
+        if (left instanceof And) {
+            result = f.and(distribute(((And) left).left, right, f), distribute(((And) left).right, right, f));
+        } else if (right instanceof And) {
+            result = f.and(distribute(left, ((And) right).left, f), distribute(left, ((And) right).right, f));
+        } else {
+            result = or;
+        }
+        f.distributeMemo.put(or, result);
+        return result;
     }
 
     static Expression toCNF(Expression expr) {
-        expr = eliminateBiconditional(expr);
-        expr = eliminateImplications(expr);
-        expr = pushNotInwards(expr);
-        expr = distributeOrOverAnd(expr);
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.CNF);
+        Expression cnf = toCNF(expr, new Factory());
+        timer.stop();
+        return cnf;
+    }
+
+    /** Converts the expression into CNF, sharing the factory's unique nodes and memo tables, so
+     * subterms already converted for an earlier sentence are not converted again.
+     * @param expr : The expression to convert.
+     * @param f : The factory the nodes are built by.
+     * @return the expression in CNF*/
+    static Expression toCNF(Expression expr, Factory f) {
+        expr = f.canonical(expr);
+        expr = eliminateBiconditional(expr, f);
+        expr = eliminateImplications(expr, f);
+        expr = pushNotInwards(expr, f);
+        expr = distributeOrOverAnd(expr, f);
         return expr;
     }
 
+    /** Flattens an expression in CNF into its clauses. A literal is written as in DIMACS: the
+     * id of its symbol plus one, negated when the literal is negative.
+     * @param cnf : An expression that is already in CNF.
+     * @param symbols : The symbol table the symbols are interned into.
+     * @return the clauses, each one an array of literals*/
+    static List<int[]> toClauses(Expression cnf, SymbolTable symbols) {
+        List<int[]> clauses = new ArrayList<>();
+        addClauses(cnf, symbols, clauses);
+        return clauses;
+    }
+
+    private static void addClauses(Expression expr, SymbolTable symbols, List<int[]> clauses) {
+        if (expr instanceof And) {
+            addClauses(((And) expr).left, symbols, clauses);
+            addClauses(((And) expr).right, symbols, clauses);
+        } else {
+            IntList literals = new IntList();
+            addLiterals(expr, symbols, literals);
+            clauses.add(literals.toArray());
+        }
+    }
+
+    private static void addLiterals(Expression expr, SymbolTable symbols, IntList literals) {
+        if (expr instanceof Or) {
+            addLiterals(((Or) expr).left, symbols, literals);
+            addLiterals(((Or) expr).right, symbols, literals);
+        } else if (expr instanceof Variable) {
+            literals.add(symbols.intern(((Variable) expr).name) + 1);
+        } else if (expr instanceof Not && ((Not) expr).expr instanceof Variable) {
+            literals.add(-(symbols.intern(((Variable) ((Not) expr).expr).name) + 1));
+        } else {
+            throw new IllegalArgumentException("Expression is not in CNF: " + printExpression(expr));
+        }
+    }
+
+    /** Converts the expression into clauses with the Tseitin encoding. Every compound subformula
+     * gets a fresh auxiliary symbol that is defined by a few short clauses, so the output is linear
+     * in the size of the expression where distributing Or over And can be exponential. The clauses
+     * are equisatisfiable with the expression, not equivalent to it. With polarity set, only the
+     * direction of each definition that the subformula needs is emitted (Plaisted-Greenbaum), which
+     * is smaller again but no longer extends each model of the expression in exactly one way.
+     * @param expr : Any expression, it does not have to be in CNF.
+     * @param symbols : The symbol table, which also hands out the auxiliary symbols.
+     * @param polarity : Whether to emit only the direction of each definition that is needed.
+     * @return the clauses, with literals written as in DIMACS*/
+    static List<int[]> toClausesTseitin(Expression expr, SymbolTable symbols, boolean polarity) {
+        return toClausesTseitin(expr, symbols, polarity, new Factory());
+    }
+
+    /** Same as toClausesTseitin, sharing the factory's unique nodes, so a subformula that occurs
+     * several times, in one sentence or across sentences, is defined by a single auxiliary symbol.*/
+    static List<int[]> toClausesTseitin(Expression expr, SymbolTable symbols, boolean polarity, Factory f) {
+        List<int[]> clauses = new ArrayList<>();
+        expr = f.canonical(expr);
+
+        // Top-level conjuncts are asserted one by one, and the ones that already are clauses need no definition
+        List<Expression> conjuncts = new ArrayList<>();
+        flatten(expr, And.class, conjuncts);
+        for (Expression conjunct : conjuncts) {
+            if (isClause(conjunct)) {
+                addClauses(conjunct, symbols, clauses);
+            } else {
+                clauses.add(new int[] {tseitin(conjunct, symbols, polarity ? 1 : 0, clauses, f)});
+            }
+        }
+        return clauses;
+    }
+
+    // This method converts a sentence into clauses, either by toCNF or by the Tseitin encoding
+    static List<int[]> clausesOf(Expression expr, SymbolTable symbols, boolean tseitin, Factory f) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.CNF);
+        List<int[]> clauses = tseitin ? toClausesTseitin(expr, symbols, true, f) : toClauses(toCNF(expr, f), symbols);
+        Metrics.add(Metrics.Counter.CLAUSES_GENERATED, clauses.size());
+        timer.stop();
+        return clauses;
+    }
+
+    // This method converts every sentence of a KB into clauses, sharing one factory between them
+    static List<int[]> clausesOf(List<String> kb, SymbolTable symbols, boolean tseitin) {
+        Factory f = new Factory();
+        List<int[]> clauses = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                clauses.addAll(clausesOf(parseExpression(sentence, symbols), symbols, tseitin, f));
+            }
+        }
+        return clauses;
+    }
+
+    // Returns the literal standing for the expression, adding the clauses that define it. Polarity is
+    // 1 or -1 when the expression only occurs positively or negatively, and 0 when both directions are needed
+    private static int tseitin(Expression expr, SymbolTable symbols, int polarity, List<int[]> clauses, Factory f) {
+        if (expr instanceof Variable) {
+            return symbols.intern(((Variable) expr).name) + 1;
+        } else if (expr instanceof Not) {
+            return -tseitin(((Not) expr).expr, symbols, -polarity, clauses, f);
+        }
+
+        // A subformula defined in both directions serves any polarity
+        int[] defined = f.tseitinMemo.computeIfAbsent(expr, k -> new int[3]);
+        if (defined[1] != 0) {
+            return defined[1];
+        } else if (defined[polarity + 1] != 0) {
+            return defined[polarity + 1];
+        }
+
+        int x = symbols.fresh() + 1;
+        defined[polarity + 1] = x;
+        if (expr instanceof And || expr instanceof Or) {
+            boolean isAnd = expr instanceof And;
+            List<Expression> operands = new ArrayList<>();
+            flatten(expr, expr.getClass(), operands);
+            int[] literals = new int[operands.size()];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = tseitin(operands.get(i), symbols, polarity, clauses, f);
+            }
+
+            // x => the operands: ~x || a for And, ~x || a || b || ... for Or
+            if (polarity >= 0) {
+                if (isAnd) {
+                    for (int a : literals) {
+                        clauses.add(new int[] {-x, a});
+                    }
+                } else {
+                    clauses.add(prepend(-x, literals, 1));
+                }
+            }
+            // the operands => x: x || ~a || ~b || ... for And, x || ~a for Or
+            if (polarity <= 0) {
+                if (isAnd) {
+                    clauses.add(prepend(x, literals, -1));
+                } else {
+                    for (int a : literals) {
+                        clauses.add(new int[] {x, -a});
+                    }
+                }
+            }
+        } else if (expr instanceof Implies) {
+            int a = tseitin(((Implies) expr).left, symbols, -polarity, clauses, f);
+            int b = tseitin(((Implies) expr).right, symbols, polarity, clauses, f);
+            if (polarity >= 0) {
+                clauses.add(new int[] {-x, -a, b});
+            }
+            if (polarity <= 0) {
+                clauses.add(new int[] {x, a});
+                clauses.add(new int[] {x, -b});
+            }
+        } else if (expr instanceof Biconditional) {
+            int a = tseitin(((Biconditional) expr).left, symbols, 0, clauses, f);
+            int b = tseitin(((Biconditional) expr).right, symbols, 0, clauses, f);
+            if (polarity >= 0) {
+                clauses.add(new int[] {-x, -a, b});
+                clauses.add(new int[] {-x, a, -b});
+            }
+            if (polarity <= 0) {
+                clauses.add(new int[] {x, a, b});
+                clauses.add(new int[] {x, -a, -b});
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown expression: " + expr);
+        }
+        return x;
+    }
+
+    // Collects the operands of a chain of the same binary operator, such as a & (b & c)
+    private static void flatten(Expression expr, Class<?> operator, List<Expression> operands) {
+        if (operator == And.class && expr instanceof And) {
+            flatten(((And) expr).left, operator, operands);
+            flatten(((And) expr).right, operator, operands);
+        } else if (operator == Or.class && expr instanceof Or) {
+            flatten(((Or) expr).left, operator, operands);
+            flatten(((Or) expr).right, operator, operands);
+        } else {
+            operands.add(expr);
+        }
+    }
+
+    // Whether the expression is a disjunction of literals
+    private static boolean isClause(Expression expr) {
+        if (expr instanceof Or) {
+            return isClause(((Or) expr).left) && isClause(((Or) expr).right);
+        }
+        return expr instanceof Variable || (expr instanceof Not && ((Not) expr).expr instanceof Variable);
+    }
+
+    private static int[] prepend(int first, int[] literals, int sign) {
+        int[] clause = new int[literals.length + 1];
+        clause[0] = first;
+        for (int i = 0; i < literals.length; i++) {
+            clause[i + 1] = sign * literals[i];
+        }
+        return clause;
+    }
+
     static String printExpression(Expression expr) {
         if (expr instanceof And) {
             return "(" + printExpression(((And) expr).left) + " & " + printExpression(((And) expr).right) + ")";
@@ -0,0 +1,18 @@
+package me.discordbot;
+
+import java.util.concurrent.CancellationException;
+
+/** Cancellation lets a long-running engine be stopped by interrupting its thread, such as an
+ * engine that lost a race of the Portfolio. The engines call check() once per step of their main
+ * loop, which is a read of the interrupt flag while nobody has asked them to stop.*/
+public final class Cancellation {
+    private Cancellation() {
+    }
+
+    // This method stops the engine running on this thread, with a CancellationException, if the thread has been interrupted
+    public static void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Cancelled");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** CompiledSentence is a propositional sentence that has been parsed once into a flat postfix
+ * program over interned symbol ids. Evaluating it against a model only walks the program, so
+ * no string is split, trimmed or looked up while models are being enumerated.*/
+public class CompiledSentence {
+    // Operators are encoded as negative codes, anything >= 0 pushes the value of that symbol
+    static final int NOT = Lexer.NOT;
+    static final int AND = Lexer.AND;
+    static final int OR = Lexer.OR;
+    static final int IMPLIES = Lexer.IMPLIES;
+    static final int IFF = Lexer.IFF;
+
+    final int[] code;     // The postfix program
+    final int maxDepth;   // Deepest the value stack gets while running the program
+
+    private CompiledSentence(int[] code, int maxDepth) {
+        this.code = code;
+        this.maxDepth = maxDepth;
+    }
+
+    /** Compiles a sentence such as "(a <=> (c => ~d)) & b" into postfix form, using operator
+     * precedence ~, &, ||, =>, <=> from tightest to loosest. => and <=> group to the right.
+     * @param sentence : The sentence to compile.
+     * @param symbols : The symbol table the symbols of the sentence are interned into.
+     * @return the compiled sentence*/
+    public static CompiledSentence compile(String sentence, SymbolTable symbols) {
+        return compile(sentence, new SentenceParser(symbols));
+    }
+
+    // Same as compile, reusing the buffers of a parser across the sentences of a KB
+    static CompiledSentence compile(String sentence, SentenceParser parser) {
+        int[] code = parser.compile(sentence);
+        return new CompiledSentence(code, depth(code));
+    }
+
+    // This method returns the ids of the symbols the sentence uses
+    public BitSet symbols() {
+        BitSet symbols = new BitSet();
+        for (int op : code) {
+            if (op >= 0) {
+                symbols.set(op);
+            }
+        }
+        return symbols;
+    }
+
+    /** Evaluates the sentence in the model.
+     * @param model : The model as a bitmask, where bit i holds the value of symbol i.
+     * @return true if the sentence holds in the model*/
+    public boolean evaluate(long model) {
+        if (maxDepth > 64) {
+            return evaluate(model, new boolean[maxDepth]);
+        }
+
+        long stack = 0; // the value stack, one bit per entry with the top in bit 0
+        for (int op : code) {
+            if (op >= 0) {
+                stack = (stack << 1) | ((model >>> op) & 1L);
+            } else if (op == NOT) {
+                stack ^= 1L;
+            } else {
+                long right = stack & 1L;
+                stack >>>= 1;
+                long left = stack & 1L;
+                stack = (stack & ~1L) | apply(op, left, right);
+            }
+        }
+        return (stack & 1L) != 0;
+    }
+
+    // Fallback for sentences whose value stack does not fit in a long
+    private boolean evaluate(long model, boolean[] stack) {
+        int top = -1;
+        for (int op : code) {
+            if (op >= 0) {
+                stack[++top] = ((model >>> op) & 1L) != 0;
+            } else if (op == NOT) {
+                stack[top] = !stack[top];
+            } else {
+                boolean right = stack[top--];
+                stack[top] = apply(op, stack[top] ? 1L : 0L, right ? 1L : 0L) != 0;
+            }
+        }
+        return stack[0];
+    }
+
+    private static long apply(int op, long left, long right) {
+        switch (op) {
+            case AND:
+                return left & right;
+            case OR:
+                return left | right;
+            case IMPLIES:
+                return (left ^ 1L) | right;
+            case IFF:
+                return (left ^ right) ^ 1L;
+            default:
+                throw new IllegalStateException("Unknown operator code: " + op);
+        }
+    }
+
+    // This method computes how deep the value stack gets when the program runs
+    private static int depth(int[] code) {
+        int depth = 0;
+        int max = 0;
+        for (int op : code) {
+            if (op >= 0) {
+                max = Math.max(max, ++depth);
+            } else if (op != NOT) {
+                depth--;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,528 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** DPLL is a conflict-driven clause learning SAT solver. It decides entailment by refutation:
+ * KB entails query exactly when KB together with the negated query has no model.
+ * The solver uses two watched literals per clause for unit propagation, learns a first-UIP
+ * clause from every conflict, branches on the variable with the highest VSIDS activity
+ * and restarts following the Luby sequence.*/
+public class DPLL {
+    private static final int UNDEF = -1;
+    private static final int RESTART_UNIT = 100;  // conflicts per unit of the Luby sequence
+    private static final double VAR_DECAY = 0.95;
+    private static final int REDUCE_INTERVAL = 2000; // conflicts between two clean-ups of learnt clauses
+
+    private final int numVars;
+    private final List<int[]> clauses = new ArrayList<>(); // original and learnt clauses, null once deleted
+    private final IntList learnts = new IntList();          // indices of the learnt clauses
+    private final IntList lbd = new IntList();              // distinct decision levels of each learnt clause
+    private long nextReduce = REDUCE_INTERVAL;
+    private long totalConflicts;
+    private long decisions;
+    private final IntList[] watches;                        // (clause, blocker literal) pairs watching each literal
+    private boolean unsat;                                  // an empty clause was added
+
+    // Literal of variable v is 2 * v when positive and 2 * v + 1 when negative
+    private final int[] assigns;  // per variable: 1 true, 0 false, UNDEF unassigned
+    private final int[] level;    // decision level each variable was assigned at
+    private final int[] reason;   // clause that implied each variable, or -1 for decisions
+    private final int[] phase;    // last value of each variable, reused when branching on it
+    private final int[] trail;
+    private int trailSize;
+    private int qhead;            // next trail entry to propagate
+    private final IntList trailLim = new IntList(); // trail size at the start of each decision level
+
+    private final double[] activity;
+    private double varInc = 1.0;
+    private final int[] heap;     // binary max-heap of unassigned variables ordered by activity
+    private final int[] heapIndex;
+    private int heapSize;
+    private final boolean[] seen;
+
+    /** Creates a solver over the given clauses.
+     * @param numVars : The number of variables, so literals range over 1..numVars in absolute value.
+     * @param dimacsClauses : The clauses, with literals written as in DIMACS.*/
+    public DPLL(int numVars, List<int[]> dimacsClauses) {
+        this.numVars = numVars;
+        watches = new IntList[2 * numVars];
+        for (int i = 0; i < watches.length; i++) {
+            watches[i] = new IntList();
+        }
+        assigns = new int[numVars];
+        Arrays.fill(assigns, UNDEF);
+        level = new int[numVars];
+        reason = new int[numVars];
+        phase = new int[numVars];
+        trail = new int[numVars];
+        activity = new double[numVars];
+        seen = new boolean[numVars];
+
+        heap = new int[numVars];
+        heapIndex = new int[numVars];
+        for (int v = 0; v < numVars; v++) {
+            heap[v] = v;
+            heapIndex[v] = v;
+        }
+        heapSize = numVars;
+
+        for (int[] clause : dimacsClauses) {
+            addClause(clause);
+        }
+    }
+
+    /** Using a CDCL SAT solver, this method returns "YES" if KB entails query and "NO" otherwise.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateDPLL(List<String> kb, String query) {
+        return evaluateDPLL(kb, query, false);
+    }
+
+    /** Same as evaluateDPLL, choosing how the sentences are converted into clauses.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @param tseitin : Whether to use the Tseitin encoding instead of distributing Or over And.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateDPLL(List<String> kb, String query, boolean tseitin) {
+        SymbolTable symbols = new SymbolTable();
+        CNFConverter.Factory factory = new CNFConverter.Factory(); // shared subformulas are converted once
+        List<int[]> clauses = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                CNFConverter.Expression expression = CNFConverter.parseExpression(sentence, symbols);
+                clauses.addAll(CNFConverter.clausesOf(expression, symbols, tseitin, factory));
+            }
+        }
+
+        // KB entails query if and only if KB & ~query is unsatisfiable
+        CNFConverter.Expression negatedQuery = new CNFConverter.Not(CNFConverter.parseExpression(query, symbols));
+        clauses.addAll(CNFConverter.clausesOf(negatedQuery, symbols, tseitin, factory));
+
+        return new DPLL(symbols.size(), clauses).solve() ? "NO" : "YES";
+    }
+
+    /** Same as evaluateDPLL for a KB whose clauses have already been built, such as the ones
+     * stored in a snapshot.
+     * @param symbols : The symbol table of the clauses, the symbols of the query are interned into it.
+     * @param kbClauses : The clauses of the KB, with literals written as in DIMACS.
+     * @param query : The query to check for entailment.
+     * @param tseitin : Whether to use the Tseitin encoding for the negated query.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateDPLL(SymbolTable symbols, List<int[]> kbClauses, String query, boolean tseitin) {
+        List<int[]> clauses = new ArrayList<>(kbClauses);
+        CNFConverter.Expression negatedQuery = new CNFConverter.Not(CNFConverter.parseExpression(query, symbols));
+        clauses.addAll(CNFConverter.clausesOf(negatedQuery, symbols, tseitin, new CNFConverter.Factory()));
+        return new DPLL(symbols.size(), clauses).solve() ? "NO" : "YES";
+    }
+
+    /** Searches for a model of the clauses.
+     * @return true if the clauses are satisfiable, false if they are not*/
+    public boolean solve() {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.SEARCH);
+        int result = unsat || propagate() >= 0 ? 0 : UNDEF;
+        for (int restart = 0; result == UNDEF; restart++) {
+            result = search(luby(restart) * RESTART_UNIT);
+            if (result == UNDEF) {
+                cancelUntil(0);
+            }
+        }
+
+        Metrics.add(Metrics.Counter.DECISIONS, decisions);
+        Metrics.add(Metrics.Counter.CONFLICTS, totalConflicts);
+        timer.stop();
+        return result == 1;
+    }
+
+    /** Returns the value of the variable in the model found by solve().
+     * @param var : The variable, counted from 0.
+     * @return true if the variable is true in the model*/
+    public boolean value(int var) {
+        return assigns[var] == 1;
+    }
+
+    // Runs CDCL until a model is found (1), unsatisfiability is proven (0) or the budget is spent (UNDEF)
+    private int search(long conflictBudget) {
+        long conflicts = 0;
+        IntList learnt = new IntList();
+
+        while (true) {
+            Cancellation.check();
+            int conflict = propagate();
+            if (conflict >= 0) {
+                conflicts++;
+                totalConflicts++;
+                if (decisionLevel() == 0) {
+                    return 0;
+                }
+
+                int backtrackLevel = analyze(conflict, learnt);
+                cancelUntil(backtrackLevel);
+                int[] clause = learnt.toArray();
+                if (clause.length == 1) {
+                    enqueue(clause[0], -1);
+                } else {
+                    int index = clauses.size();
+                    clauses.add(clause);
+                    learnts.add(index);
+                    lbd.add(levelCount(clause));
+                    watch(clause[0], index, clause[1]);
+                    watch(clause[1], index, clause[0]);
+                    enqueue(clause[0], index);
+                }
+                varInc /= VAR_DECAY;
+
+                if (totalConflicts >= nextReduce) {
+                    nextReduce += REDUCE_INTERVAL;
+                    reduceLearnts();
+                }
+            } else {
+                if (conflicts >= conflictBudget) {
+                    return UNDEF;
+                }
+
+                int var = pickBranchVariable();
+                if (var < 0) {
+                    return 1; // every variable is assigned without conflict
+                }
+                decisions++;
+                trailLim.add(trailSize);
+                enqueue(2 * var + (phase[var] == 1 ? 0 : 1), -1);
+            }
+        }
+    }
+
+    // Adds a clause given in DIMACS form, dropping duplicate literals and tautologies
+    private void addClause(int[] dimacs) {
+        int[] clause = new int[dimacs.length];
+        for (int i = 0; i < dimacs.length; i++) {
+            int var = Math.abs(dimacs[i]) - 1;
+            clause[i] = 2 * var + (dimacs[i] < 0 ? 1 : 0);
+        }
+        Arrays.sort(clause);
+
+        int size = 0;
+        for (int i = 0; i < clause.length; i++) {
+            if (size > 0 && clause[size - 1] == clause[i]) {
+                continue; // duplicate literal
+            }
+            if (size > 0 && clause[size - 1] == (clause[i] ^ 1)) {
+                return; // contains both p and ~p, so it is always true
+            }
+            clause[size++] = clause[i];
+        }
+        clause = Arrays.copyOf(clause, size);
+
+        if (size == 0) {
+            unsat = true;
+        } else if (size == 1) {
+            int value = litValue(clause[0]);
+            if (value == 0) {
+                unsat = true;
+            } else if (value == UNDEF) {
+                enqueue(clause[0], -1);
+            }
+        } else {
+            int index = clauses.size();
+            clauses.add(clause);
+            watch(clause[0], index, clause[1]);
+            watch(clause[1], index, clause[0]);
+        }
+    }
+
+    // The blocker is another literal of the clause; while it is true the clause needs no visit
+    private void watch(int lit, int index, int blocker) {
+        IntList watchList = watches[lit];
+        watchList.add(index);
+        watchList.add(blocker);
+    }
+
+    // Propagates every enqueued assignment, returning the conflicting clause or -1
+    private int propagate() {
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            IntList watchList = watches[falseLit];
+            int i = 0;
+            int j = 0;
+
+            while (i < watchList.size) {
+                int index = watchList.get(i);
+                int blocker = watchList.get(i + 1);
+                i += 2;
+                if (litValue(blocker) == 1) {
+                    // Clause is already true, no need to look at it
+                    watchList.set(j++, index);
+                    watchList.set(j++, blocker);
+                    continue;
+                }
+                int[] clause = clauses.get(index);
+                if (clause == null) {
+                    continue; // deleted learnt clause, drop the watch
+                }
+
+                // Keep the false literal in position 1
+                if (clause[0] == falseLit) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLit;
+                }
+                if (litValue(clause[0]) == 1) {
+                    watchList.set(j++, index); // clause is already true
+                    watchList.set(j++, clause[0]);
+                    continue;
+                }
+
+                // Look for another literal that is not false to watch instead
+                boolean moved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (litValue(clause[k]) != 0) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLit;
+                        watch(clause[1], index, clause[0]);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+
+                watchList.set(j++, index);
+                watchList.set(j++, clause[0]);
+                if (litValue(clause[0]) == 0) {
+                    // Every literal is false: keep the remaining watches and report the conflict
+                    while (i < watchList.size) {
+                        watchList.set(j++, watchList.get(i++));
+                    }
+                    watchList.size = j;
+                    qhead = trailSize;
+                    return index;
+                }
+                enqueue(clause[0], index); // unit clause
+            }
+            watchList.size = j;
+        }
+        return -1;
+    }
+
+    // Builds the first-UIP clause of the conflict into learnt and returns the level to backjump to
+    private int analyze(int conflict, IntList learnt) {
+        learnt.clear();
+        learnt.add(0); // room for the asserting literal
+        int pathCount = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+
+        do {
+            int[] clause = clauses.get(conflict);
+            for (int k = lit < 0 ? 0 : 1; k < clause.length; k++) {
+                int var = clause[k] >> 1;
+                if (!seen[var] && level[var] > 0) {
+                    bumpActivity(var);
+                    seen[var] = true;
+                    if (level[var] >= decisionLevel()) {
+                        pathCount++;
+                    } else {
+                        learnt.add(clause[k]);
+                    }
+                }
+            }
+
+            // Walk back along the trail to the next literal of the current level in the conflict
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            lit = trail[index--];
+            conflict = reason[lit >> 1];
+            seen[lit >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt.set(0, lit ^ 1);
+
+        // Backjump to the highest level among the other literals, which becomes the second watch
+        int backtrackLevel = 0;
+        for (int k = 1; k < learnt.size; k++) {
+            int var = learnt.get(k) >> 1;
+            seen[var] = false;
+            if (level[var] > backtrackLevel) {
+                backtrackLevel = level[var];
+                int swap = learnt.get(1);
+                learnt.set(1, learnt.get(k));
+                learnt.set(k, swap);
+            }
+        }
+        return backtrackLevel;
+    }
+
+    // Deletes the less useful half of the learnt clauses, keeping the ones that span few decision
+    // levels and the ones that are currently the reason of an assignment
+    private void reduceLearnts() {
+        Integer[] order = new Integer[learnts.size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> lbd.get(b) != lbd.get(a)
+                ? Integer.compare(lbd.get(b), lbd.get(a))
+                : Integer.compare(clauses.get(learnts.get(b)).length, clauses.get(learnts.get(a)).length));
+
+        boolean[] delete = new boolean[order.length];
+        for (int i = 0; i < order.length / 2; i++) {
+            int index = learnts.get(order[i]);
+            int[] clause = clauses.get(index);
+            boolean locked = reason[clause[0] >> 1] == index && litValue(clause[0]) == 1;
+            if (lbd.get(order[i]) > 2 && !locked) {
+                delete[order[i]] = true;
+                clauses.set(index, null);
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < learnts.size; i++) {
+            if (!delete[i]) {
+                learnts.set(kept, learnts.get(i));
+                lbd.set(kept++, lbd.get(i));
+            }
+        }
+        learnts.size = kept;
+        lbd.size = kept;
+    }
+
+    // Number of distinct decision levels among the literals of the clause
+    private int levelCount(int[] clause) {
+        Set<Integer> levels = new HashSet<>();
+        for (int lit : clause) {
+            levels.add(level[lit >> 1]);
+        }
+        return levels.size();
+    }
+
+    private void enqueue(int lit, int from) {
+        int var = lit >> 1;
+        assigns[var] = (lit & 1) ^ 1;
+        level[var] = decisionLevel();
+        reason[var] = from;
+        trail[trailSize++] = lit;
+    }
+
+    private void cancelUntil(int targetLevel) {
+        if (decisionLevel() <= targetLevel) {
+            return;
+        }
+        int start = trailLim.get(targetLevel);
+        for (int i = trailSize - 1; i >= start; i--) {
+            int var = trail[i] >> 1;
+            phase[var] = assigns[var];
+            assigns[var] = UNDEF;
+            reason[var] = -1;
+            if (heapIndex[var] < 0) {
+                heapInsert(var);
+            }
+        }
+        trailSize = start;
+        qhead = start;
+        trailLim.size = targetLevel;
+    }
+
+    private int pickBranchVariable() {
+        while (heapSize > 0) {
+            int var = heapRemoveMax();
+            if (assigns[var] == UNDEF) {
+                return var;
+            }
+        }
+        return -1;
+    }
+
+    private int decisionLevel() {
+        return trailLim.size;
+    }
+
+    // 1 if the literal is true, 0 if it is false, UNDEF if its variable is unassigned
+    private int litValue(int lit) {
+        int value = assigns[lit >> 1];
+        return value == UNDEF ? UNDEF : value ^ (lit & 1);
+    }
+
+    private void bumpActivity(int var) {
+        activity[var] += varInc;
+        if (activity[var] > 1e100) {
+            // Rescale every activity before the doubles overflow
+            for (int v = 0; v < numVars; v++) {
+                activity[v] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        if (heapIndex[var] >= 0) {
+            heapUp(heapIndex[var]);
+        }
+    }
+
+    // Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ... used to space out restarts
+    static long luby(int i) {
+        int size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+
+    private void heapInsert(int var) {
+        heap[heapSize] = var;
+        heapIndex[var] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int max = heap[0];
+        heapIndex[max] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return max;
+    }
+
+    private void heapUp(int i) {
+        int var = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[var]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+
+    private void heapDown(int i) {
+        int var = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[var]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = var;
+        heapIndex[var] = i;
+    }
+}
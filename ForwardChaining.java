@@ -1,8 +1,17 @@
 package me.discordbot;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
 
 public class ForwardChaining {
+    static final int PARALLEL_CHUNK = 1 << 12; // rule occurrences a parallel worker goes through without splitting further
+
     /** Using Forward Chaining algorithm, this method returns "YES",
      * followed by the list of propositional symbols entailed from KB that has been
      * found during the execution of the FC algorithm.
@@ -11,31 +20,264 @@ public class ForwardChaining {
      * @param query : The query needed for evaluation of entailment.
      * @return a string that indicates if query is entailed by KB with YES and NO*/
     public static String evaluateFC(Set<String> facts, List<Rule> rules, String query) {
-        Set<String> inferred = new HashSet<>(facts);
-        boolean newFactInferred;
+        // The caller's facts are only read, so the same set can be shared by several threads
+        HornKB kb = HornKB.compile(facts, rules);
+        int queryId = kb.symbols.lookup(query);
+        List<String> inferred = kb.symbols.names(inferAgenda(kb, queryId));
+
+        return inferred.contains(query) ? "YES: " + inferred : "NO";
+    }
+
+    /** Using Forward Chaining algorithm on a compiled KB, this method returns "YES",
+     * followed by the list of propositional symbols entailed from KB, or "NO".
+     * @param kb : The compiled Horn KB.
+     * @param query : The query needed for evaluation of entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateFC(HornKB kb, String query) {
+        int queryId = kb.symbols.lookup(query);
+        if (queryId < 0) {
+            return "NO"; // the query does not appear anywhere in the KB
+        }
+
+        BitSet inferred = inferAgenda(kb, queryId);
+        return inferred.get(queryId) ? "YES: " + kb.symbols.names(inferred) : "NO";
+    }
+
+    /** Answers a batch of queries against the same KB. The closure is computed once, then every
+     * query is a lookup. Each answer, "YES" or "NO", is handed over as soon as it is known.
+     * @param kb : The compiled Horn KB.
+     * @param queries : The queries needed for evaluation of entailment.
+     * @param results : Receives each query with its answer, in order.*/
+    public static void evaluateFCBatch(HornKB kb, List<String> queries, BiConsumer<String, String> results) {
+        BitSet closure = inferAgenda(kb, -1);
+        for (String query : queries) {
+            int queryId = kb.symbols.lookup(query);
+            results.accept(query, queryId >= 0 && closure.get(queryId) ? "YES" : "NO");
+        }
+    }
+
+    /** Agenda-based forward chaining. Every rule keeps a counter of the premises that are not
+     * known yet, and every symbol points to the rules it appears in as a premise. Each symbol
+     * popped from the agenda only decrements the counters of its own rules, so each rule is
+     * touched once per premise and the whole pass is linear in the size of the KB.
+     * @param kb : The compiled Horn KB.
+     * @param query : The id of the query to stop at, or -1 to compute the full closure.
+     * @return the ids of the facts and of every symbol inferred up to the query*/
+    public static BitSet inferAgenda(HornKB kb, int query) {
+        if (query >= 0 && kb.facts.get(query)) {
+            return (BitSet) kb.facts.clone(); // nothing to derive
+        }
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.CHAIN);
+        int[] count = new int[kb.ruleCount()]; // number of premises of each rule that are not yet inferred
+        for (int r = 0; r < count.length; r++) {
+            count[r] = kb.premiseStart[r + 1] - kb.premiseStart[r];
+        }
 
-        do {
-            newFactInferred = false;
+        // Every symbol enters the agenda at most once, so the queue never outgrows the symbol count
+        BitSet inferred = (BitSet) kb.facts.clone();
+        int[] agenda = new int[kb.symbolCount];
+        int head = 0;
+        int tail = 0;
+        int fired = 0;
+        for (int s = inferred.nextSetBit(0); s >= 0; s = inferred.nextSetBit(s + 1)) {
+            agenda[tail++] = s;
+        }
 
-            for (Rule rule : rules) {
-                // Skip if the conclusion is already inferred or in facts
-                if (facts.contains(rule.conclusion) || inferred.contains(rule.conclusion)) {
-                    continue;
+        search:
+        while (head < tail) {
+            int symbol = agenda[head++];
+            for (int i = kb.ruleStart[symbol]; i < kb.ruleStart[symbol + 1]; i++) {
+                int r = kb.premiseRules[i];
+                // Fire the rule once its last premise is known
+                if (--count[r] == 0) {
+                    fired++;
+                    if (!inferred.get(kb.conclusions[r])) {
+                        inferred.set(kb.conclusions[r]);
+                        if (kb.conclusions[r] == query) {
+                            break search; // stop as soon as the query is derived
+                        }
+                        agenda[tail++] = kb.conclusions[r];
+                    }
                 }
+            }
+        }
+
+        Metrics.add(Metrics.Counter.AGENDA_POPS, head);
+        Metrics.add(Metrics.Counter.RULES_FIRED, fired);
+        timer.stop();
+        return inferred;
+    }
 
-                // Check if all premises of the rule are in the facts
-                if (facts.containsAll(rule.premises)) {
-                    // Infer the conclusion
-                    facts.add(rule.conclusion);
-                    inferred.add(rule.conclusion);
-                    newFactInferred = true;
+    /** Parallel version of evaluateFC. The closure of the KB is derived on the common ForkJoinPool,
+     * so the answer lists every symbol entailed by the KB, the same ones as inferAgenda(kb, -1).
+     * @param kb : The compiled Horn KB.
+     * @param query : The query needed for evaluation of entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateFCParallel(HornKB kb, String query) {
+        return evaluateFCParallel(kb, query, ForkJoinPool.commonPool());
+    }
+
+    /** Parallel version of evaluateFC that runs on the given pool.
+     * @param kb : The compiled Horn KB.
+     * @param query : The query needed for evaluation of entailment.
+     * @param pool : The pool the rules are fired on.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateFCParallel(HornKB kb, String query, ForkJoinPool pool) {
+        int queryId = kb.symbols.lookup(query);
+        if (queryId < 0) {
+            return "NO"; // the query does not appear anywhere in the KB
+        }
+
+        BitSet inferred = inferParallel(kb, pool);
+        return inferred.get(queryId) ? "YES: " + kb.symbols.names(inferred) : "NO";
+    }
 
+    /** Forward chaining by rounds. Each round goes through the rules of every symbol inferred in
+     * the round before, split into chunks that are fired in parallel, and the symbols it infers
+     * make up the next round. A rule counts its known premises in an atomic counter, so exactly
+     * one worker sees it reach the number of premises and fires it, and a symbol is published by
+     * setting its bit in a lock-free bitmap, so exactly one worker claims it for the next round.
+     * A symbol is only inferred once all the premises of one of its rules are, whatever the
+     * order of the workers, so the result is the closure that inferAgenda(kb, -1) returns.
+     * @param kb : The compiled Horn KB.
+     * @param pool : The pool the rules are fired on.
+     * @return the ids of the facts and of every symbol inferred from them*/
+    public static BitSet inferParallel(HornKB kb, ForkJoinPool pool) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.CHAIN);
+        Closure closure = new Closure(kb);
+        int[] frontier = kb.facts.stream().toArray();
+        for (int fact : frontier) {
+            closure.claim(fact);
+        }
+
+        long pops = 0;
+        while (frontier.length > 0) {
+            pops += frontier.length;
+            // The rules of frontier[i] are occurrences occurrenceStart[i] .. occurrenceStart[i + 1] of the round
+            int[] occurrenceStart = new int[frontier.length + 1];
+            for (int i = 0; i < frontier.length; i++) {
+                occurrenceStart[i + 1] = occurrenceStart[i] + kb.ruleStart[frontier[i] + 1] - kb.ruleStart[frontier[i]];
+            }
+
+            Round round = new Round(closure, frontier, occurrenceStart, 0, occurrenceStart[frontier.length]);
+            if (round.to <= PARALLEL_CHUNK) {
+                round.compute(); // not worth a trip to the pool, as in every round of a long chain
+            } else {
+                pool.invoke(round);
+            }
+            frontier = Arrays.copyOf(closure.next, closure.nextSize.getAndSet(0));
+        }
+
+        Metrics.add(Metrics.Counter.AGENDA_POPS, pops);
+        Metrics.add(Metrics.Counter.RULES_FIRED, closure.fired.get());
+        timer.stop();
+        return BitSet.valueOf(closure.toLongArray());
+    }
+
+    /** The state the workers of inferParallel share.*/
+    private static final class Closure {
+        final HornKB kb;
+        final AtomicLongArray inferred;  // one bit per symbol
+        final AtomicIntegerArray known;  // number of premises of each rule that are inferred
+        final int[] next;                // the symbols inferred in the current round
+        final AtomicInteger nextSize = new AtomicInteger();
+        final AtomicLong fired = new AtomicLong();
+
+        Closure(HornKB kb) {
+            this.kb = kb;
+            this.inferred = new AtomicLongArray((kb.symbolCount + 63) >>> 6);
+            this.known = new AtomicIntegerArray(kb.ruleCount());
+            this.next = new int[kb.symbolCount];
+        }
+
+        // Sets the bit of the symbol, and tells if this call is the one that set it
+        boolean claim(int symbol) {
+            int word = symbol >>> 6;
+            long bit = 1L << symbol;
+            long old = inferred.get(word);
+            while ((old & bit) == 0) {
+                long witness = inferred.compareAndExchange(word, old, old | bit);
+                if (witness == old) {
+                    return true;
                 }
+                old = witness;
             }
-        } while (newFactInferred);
+            return false;
+        }
 
-        // If no new facts can be inferred and the query is not inferred
-        return facts.contains(query) ? "YES: " + inferred : "NO";
+        long[] toLongArray() {
+            long[] words = new long[inferred.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = inferred.get(i);
+            }
+            return words;
+        }
     }
 
+    /** Round goes through the rule occurrences [from, to) of a round, splitting them in halves
+     * until a chunk is small enough, so a symbol used by millions of rules is shared out as well
+     * as millions of symbols used by a few rules each.*/
+    @SuppressWarnings("serial") // tasks are never serialized
+    private static final class Round extends RecursiveAction {
+        private final Closure closure;
+        private final int[] frontier;
+        private final int[] occurrenceStart;
+        private final int from;
+        private final int to;
+
+        Round(Closure closure, int[] frontier, int[] occurrenceStart, int from, int to) {
+            this.closure = closure;
+            this.frontier = frontier;
+            this.occurrenceStart = occurrenceStart;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_CHUNK) {
+                int middle = from + (to - from) / 2;
+                invokeAll(new Round(closure, frontier, occurrenceStart, from, middle),
+                        new Round(closure, frontier, occurrenceStart, middle, to));
+                return;
+            }
+
+            HornKB kb = closure.kb;
+            // The last symbol of the frontier whose occurrences start at or before from
+            int low = 0;
+            int high = frontier.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (occurrenceStart[middle] <= from) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            int[] found = new int[16];
+            int size = 0;
+            int fired = 0;
+            for (int i = low, e = from; e < to; i++) {
+                int offset = kb.ruleStart[frontier[i]] - occurrenceStart[i];
+                for (int end = Math.min(to, occurrenceStart[i + 1]); e < end; e++) {
+                    int r = kb.premiseRules[offset + e];
+                    // Fire the rule once its last premise is known
+                    if (closure.known.incrementAndGet(r) == kb.premiseStart[r + 1] - kb.premiseStart[r]) {
+                        fired++;
+                        if (closure.claim(kb.conclusions[r])) {
+                            if (size == found.length) {
+                                found = Arrays.copyOf(found, size * 2);
+                            }
+                            found[size++] = kb.conclusions[r];
+                        }
+                    }
+                }
+            }
+
+            // Symbols are claimed once, so the next round never holds more than every symbol
+            System.arraycopy(found, 0, closure.next, closure.nextSize.getAndAdd(size), size);
+            closure.fired.addAndGet(fired);
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** HornKB is the compiled form of a Horn knowledge base. Symbols are interned to ints, the
+ * facts are kept in a bitmap and the rules are packed into flat int arrays, so the engines never
+ * hash a string or allocate a rule object while they run.*/
+public class HornKB {
+    final SymbolTable symbols;
+    final int symbolCount;
+    final BitSet facts;
+
+    final int[] premiseStart; // premises of rule r are premises[premiseStart[r] .. premiseStart[r + 1])
+    final int[] premises;
+    final int[] conclusions;
+
+    final int[] ruleStart;    // rules that use symbol s as premise are premiseRules[ruleStart[s] .. ruleStart[s + 1])
+    final int[] premiseRules;
+
+    final int[] concludingStart; // rules that conclude symbol s are concludingRules[concludingStart[s] .. concludingStart[s + 1])
+    final int[] concludingRules;
+
+    /** Packs the rules into the compiled form.
+     * @param symbols : The symbol table the facts and the rules have been interned into.
+     * @param facts : The ids of the facts.
+     * @param rules : The rules, each of them interned into the symbol table.*/
+    public HornKB(SymbolTable symbols, BitSet facts, List<Rule> rules) {
+        this(symbols, facts, premiseStarts(rules), premisesOf(rules), conclusionsOf(rules));
+    }
+
+    /** Indexes rules that are already packed, such as the ones a parser emits while it scans.
+     * @param symbols : The symbol table the facts and the rules have been interned into.
+     * @param facts : The ids of the facts.
+     * @param premiseStart : Where the premises of each rule start, with the total count at the end.
+     * @param premises : The premise ids of every rule, back to back.
+     * @param conclusions : The conclusion id of each rule.*/
+    public HornKB(SymbolTable symbols, BitSet facts, int[] premiseStart, int[] premises, int[] conclusions) {
+        this.symbols = symbols;
+        this.symbolCount = symbols.size();
+        this.facts = facts;
+        this.premiseStart = premiseStart;
+        this.premises = premises;
+        this.conclusions = conclusions;
+        int size = premises.length;
+
+        // Index every rule under each of its premises, once per occurrence
+        ruleStart = new int[symbolCount + 1];
+        for (int premise : premises) {
+            ruleStart[premise + 1]++;
+        }
+        for (int s = 0; s < symbolCount; s++) {
+            ruleStart[s + 1] += ruleStart[s];
+        }
+        premiseRules = new int[size];
+        int[] next = Arrays.copyOf(ruleStart, symbolCount);
+        for (int r = 0; r < conclusions.length; r++) {
+            for (int p = premiseStart[r]; p < premiseStart[r + 1]; p++) {
+                premiseRules[next[premises[p]]++] = r;
+            }
+        }
+
+        // Index every rule under its conclusion, for backward chaining
+        concludingStart = new int[symbolCount + 1];
+        for (int conclusion : conclusions) {
+            concludingStart[conclusion + 1]++;
+        }
+        for (int s = 0; s < symbolCount; s++) {
+            concludingStart[s + 1] += concludingStart[s];
+        }
+        concludingRules = new int[conclusions.length];
+        next = Arrays.copyOf(concludingStart, symbolCount);
+        for (int r = 0; r < conclusions.length; r++) {
+            concludingRules[next[conclusions[r]]++] = r;
+        }
+    }
+
+    private static int[] premiseStarts(List<Rule> rules) {
+        int[] starts = new int[rules.size() + 1];
+        for (int r = 0; r < rules.size(); r++) {
+            starts[r + 1] = starts[r] + rules.get(r).premiseIds.length;
+        }
+        return starts;
+    }
+
+    private static int[] premisesOf(List<Rule> rules) {
+        IntList premises = new IntList();
+        for (Rule rule : rules) {
+            for (int premise : rule.premiseIds) {
+                premises.add(premise);
+            }
+        }
+        return premises.toArray();
+    }
+
+    private static int[] conclusionsOf(List<Rule> rules) {
+        int[] conclusions = new int[rules.size()];
+        for (int r = 0; r < conclusions.length; r++) {
+            conclusions[r] = rules.get(r).conclusionId;
+        }
+        return conclusions;
+    }
+
+    /** Wraps arrays that already hold the rules and both indexes, as loaded from a snapshot.*/
+    HornKB(SymbolTable symbols, BitSet facts, int[] premiseStart, int[] premises, int[] conclusions,
+           int[] ruleStart, int[] premiseRules, int[] concludingStart, int[] concludingRules) {
+        this.symbols = symbols;
+        this.symbolCount = symbols.size();
+        this.facts = facts;
+        this.premiseStart = premiseStart;
+        this.premises = premises;
+        this.conclusions = conclusions;
+        this.ruleStart = ruleStart;
+        this.premiseRules = premiseRules;
+        this.concludingStart = concludingStart;
+        this.concludingRules = concludingRules;
+    }
+
+    /** Compiles facts and rules given as strings, interning them into a new symbol table.
+     * @param facts : A set of string that contains all the fact obtained from the input.
+     * @param rules : A list of Rules obtained from the input file.
+     * @return the compiled KB*/
+    public static HornKB compile(Set<String> facts, List<Rule> rules) {
+        SymbolTable symbols = new SymbolTable();
+        List<Rule> interned = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            interned.add(new Rule(rule.premises, rule.conclusion, symbols));
+        }
+
+        BitSet factIds = new BitSet();
+        for (String fact : facts) {
+            factIds.set(symbols.intern(fact));
+        }
+        return new HornKB(symbols, factIds, interned);
+    }
+
+    // This method returns the number of rules in the KB
+    public int ruleCount() {
+        return conclusions.length;
+    }
+
+    @Override
+    public String toString() {
+        return "HornKB[symbols=" + symbolCount + ", rules=" + ruleCount() + ", facts=" + symbols.names(facts) + "]";
+    }
+}
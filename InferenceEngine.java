@@ -3,78 +3,108 @@ package me.discordbot;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class InferenceEngine {
 
+    /** Reads the TELL and ASK sections of an input file: the KB is the first non-empty line after
+     * the TELL line and the query the first non-empty line after the ASK line.
+     * @param filename : The input file.
+     * @return the KB under "KB" and the query under "Query"*/
     public static Map<String, String> parseInput(String filename) throws IOException {
         Map<String, String> parsedData = new HashMap<>();
 
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.READ);
         List<String> lines = new ArrayList<>();
-        String line;
-        String tell = null;
-        String ask = null;
-
-        while ((line = reader.readLine()) != null) {
-           lines.add(line);
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
         }
+        timer.stop();
 
-        tell = lines.get(1);
-        ask = lines.get(3);
+        int tell = section(lines, "TELL", 0);
+        int ask = section(lines, "ASK", tell);
 
-        parsedData.put("KB", tell);
-        parsedData.put("Query", ask);
+        parsedData.put("KB", firstNonEmpty(lines, tell, ask - 1));
+        parsedData.put("Query", firstNonEmpty(lines, ask, lines.size()));
         return parsedData;
     }
 
+    /** Parses a Horn KB file with the streaming parser, keeping the facts and rules as strings too.
+     * Large KBs should use StreamingParser.parse directly, which only builds the compiled KB.
+     * @param filename : The input file.
+     * @return the "facts", "rules", "query", "symbols" and compiled "kb"*/
     public static Map<String, Object> parseInputForChainingAlgorithm(String filename) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        List<String> lines = new ArrayList<>();
-        String line;
-        String tell = null;
-        String ask = null;
-
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
+        StreamingParser parser = StreamingParser.parse(filename);
+        HornKB kb = parser.hornKB();
+
+        Set<String> facts = new HashSet<>(kb.symbols.names(kb.facts));
+        List<Rule> rules = new ArrayList<>(kb.ruleCount());
+        for (int r = 0; r < kb.ruleCount(); r++) {
+            List<String> premises = new ArrayList<>();
+            for (int p = kb.premiseStart[r]; p < kb.premiseStart[r + 1]; p++) {
+                premises.add(kb.symbols.name(kb.premises[p]));
+            }
+            rules.add(new Rule(premises, kb.symbols.name(kb.conclusions[r]), kb.symbols));
         }
 
-        tell = lines.get(1);
-        ask = lines.get(3);
-
-        reader.close();
+        // Return facts, rules, and query
+        Map<String, Object> parsedData = new HashMap<>();
+        parsedData.put("facts", facts);
+        parsedData.put("rules", rules);
+        parsedData.put("query", parser.query());
+        parsedData.put("symbols", kb.symbols);
+        parsedData.put("kb", kb);
+        return parsedData;
+    }
 
-        // Parse facts and rules from the TELL section
-        Set<String> facts = new HashSet<>();
-        List<Rule> rules = new ArrayList<>();
-        if (tell != null) {
-            String[] clauses = tell.split(";");
-            for (String clause : clauses) {
-                clause = clause.trim();
-                if (clause.contains("=>")) {
-                    String[] parts = clause.split("=>");
+    /** Reads every query of an input file for batch mode: each non-empty line after the ASK line
+     * is one query.
+     * @param filename : The input file.
+     * @return the queries, in order*/
+    public static List<String> parseQueries(String filename) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(filename));
+        int ask = section(lines, "ASK", section(lines, "TELL", 0));
+        return nonEmpty(lines.subList(ask, lines.size()));
+    }
 
-                    List<String> premises = Arrays.asList(parts[0].trim().split("&"));
-                    List<String> sanitizedPremises = new ArrayList<>();
+    /** Reads a separate query file for batch mode, one query per non-empty line.
+     * @param filename : The query file.
+     * @return the queries, in order*/
+    public static List<String> parseQueryFile(String filename) throws IOException {
+        return nonEmpty(Files.readAllLines(Paths.get(filename)));
+    }
 
-                    for (String premise : premises) {
-                        String sanitizedPremise = premise.trim();
-                        sanitizedPremises.add(sanitizedPremise);
-                    }
+    // Returns the index of the line after the keyword line, searching from the given line
+    private static int section(List<String> lines, String keyword, int from) {
+        for (int i = from; i < lines.size(); i++) {
+            if (lines.get(i).trim().equals(keyword)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Missing " + keyword + " line in the input file");
+    }
 
-                    String conclusion = parts[1].trim();
-                    rules.add(new Rule(sanitizedPremises, conclusion));
-                } else if (!clause.isEmpty()) {
-                    facts.add(clause);
-                }
+    private static String firstNonEmpty(List<String> lines, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!lines.get(i).trim().isEmpty()) {
+                return lines.get(i);
             }
         }
+        return "";
+    }
 
-        // Return facts, rules, and query
-        Map<String, Object> parsedData = new HashMap<>();
-        parsedData.put("facts", facts);
-        parsedData.put("rules", rules);
-        parsedData.put("query", ask);
-        return parsedData;
+    private static List<String> nonEmpty(List<String> lines) {
+        List<String> queries = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.trim().isEmpty()) {
+                queries.add(line.trim());
+            }
+        }
+        return queries;
     }
 }
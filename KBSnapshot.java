@@ -0,0 +1,396 @@
+package me.discordbot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/** KBSnapshot is a compiled KB saved in a binary file, so a large KB is parsed from text once and
+ * loaded in milliseconds afterwards. A snapshot holds the symbol table, the Horn rules with both
+ * of their indexes when the KB is a Horn KB, the CNF clauses of the KB and the query.
+ *
+ * The file is a 64 byte header followed by flat little-endian arrays, each aligned to 8 bytes,
+ * exactly as the engines keep them in memory. Saving streams the arrays to the file through a
+ * small buffer, keeping the CRC32 of the body as it goes, and writes the header last. Loading
+ * streams them back in bulk copies, and checks the CRC32 against the header once the body has
+ * been read. A KB is never held twice in memory and a snapshot may be larger than 2 GB. There is
+ * no per-object decoding and nothing is indexed again. Symbol names are only decoded when printed.
+ *
+ * Layout after the header: the symbol bytes, symbol offsets, symbol hashes, hash slots and
+ * auxiliary bitmap, then for a Horn KB the fact bitmap, premiseStart, premises, conclusions,
+ * ruleStart, premiseRules, concludingStart and concludingRules, then clauseStart and the DIMACS
+ * literals of the clauses, and last the UTF-8 bytes of the query.*/
+public class KBSnapshot {
+    static final int MAGIC = 0x424b4549; // "IEKB" once written little-endian
+    static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int CHUNK = 1 << 20; // bytes buffered between the arrays and the file, a multiple of 8
+
+    private static final int HORN = 1;    // flag: the Horn arrays are present
+    private static final int TSEITIN = 2; // flag: the clauses use the Tseitin encoding
+
+    final SymbolTable symbols;
+    final HornKB horn;       // null if the KB is not a Horn KB
+    final int[] clauseStart; // literals of clause c are literals[clauseStart[c] .. clauseStart[c + 1])
+    final int[] literals;
+    final boolean tseitin;
+    final String query;
+
+    KBSnapshot(SymbolTable symbols, HornKB horn, int[] clauseStart, int[] literals, boolean tseitin, String query) {
+        this.symbols = symbols;
+        this.horn = horn;
+        this.clauseStart = clauseStart;
+        this.literals = literals;
+        this.tseitin = tseitin;
+        this.query = query;
+    }
+
+    /** Compiles a text input file. A Horn KB is read with the streaming parser and its clauses
+     * come straight from the rules, any other KB is converted into clauses by CNFConverter.
+     * @param filename : The input file.
+     * @param tseitin : Whether a general KB uses the Tseitin encoding instead of distributing Or over And.
+     * @return the compiled KB*/
+    public static KBSnapshot compile(String filename, boolean tseitin) throws IOException {
+        StreamingParser parser = StreamingParser.parse(filename);
+        IntList clauseStart = new IntList();
+        IntList literals = new IntList();
+        clauseStart.add(0);
+
+        if (parser.isHorn()) {
+            HornKB kb = parser.kb();
+            for (int id = kb.facts.nextSetBit(0); id >= 0; id = kb.facts.nextSetBit(id + 1)) {
+                literals.add(id + 1);
+                clauseStart.add(literals.size);
+            }
+            // a & b => c is the clause ~a || ~b || c
+            for (int r = 0; r < kb.ruleCount(); r++) {
+                for (int p = kb.premiseStart[r]; p < kb.premiseStart[r + 1]; p++) {
+                    literals.add(-(kb.premises[p] + 1));
+                }
+                literals.add(kb.conclusions[r] + 1);
+                clauseStart.add(literals.size);
+            }
+            return new KBSnapshot(kb.symbols, kb, clauseStart.toArray(), literals.toArray(), false, parser.query());
+        }
+
+        Map<String, String> data = InferenceEngine.parseInput(filename);
+        SymbolTable symbols = new SymbolTable();
+        CNFConverter.Factory factory = new CNFConverter.Factory();
+        for (String sentence : data.get("KB").split(";")) {
+            if (!sentence.trim().isEmpty()) {
+                CNFConverter.Expression expression = CNFConverter.parseExpression(sentence, symbols);
+                for (int[] clause : CNFConverter.clausesOf(expression, symbols, tseitin, factory)) {
+                    for (int lit : clause) {
+                        literals.add(lit);
+                    }
+                    clauseStart.add(literals.size);
+                }
+            }
+        }
+        return new KBSnapshot(symbols, null, clauseStart.toArray(), literals.toArray(), tseitin, data.get("Query").trim());
+    }
+
+    // The compiled Horn KB, or null if the KB is not a Horn KB
+    public HornKB horn() {
+        return horn;
+    }
+
+    // The symbol table shared by the Horn KB and the clauses
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    // The query saved with the KB
+    public String query() {
+        return query;
+    }
+
+    // This method tells if the clauses use the Tseitin encoding
+    public boolean isTseitin() {
+        return tseitin;
+    }
+
+    // This method returns the CNF clauses of the KB, with literals written as in DIMACS
+    public List<int[]> clauses() {
+        List<int[]> clauses = new ArrayList<>(clauseStart.length - 1);
+        for (int c = 0; c + 1 < clauseStart.length; c++) {
+            clauses.add(Arrays.copyOfRange(literals, clauseStart[c], clauseStart[c + 1]));
+        }
+        return clauses;
+    }
+
+    /** Tells if the file starts like a snapshot, so Main can accept either kind of input.
+     * @param filename : The file to check.
+     * @return true if the file has the snapshot magic number*/
+    public static boolean isSnapshot(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /** Writes the snapshot to a file.
+     * @param filename : The file to write, replaced if it exists.*/
+    public void save(String filename) throws IOException {
+        SymbolTable s = symbols;
+        int symbolCount = s.size();
+        byte[] queryBytes = query == null ? new byte[0] : query.getBytes(StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER);
+            Body body = new Body(channel, false);
+            body.putBytes(s.pool, s.poolSize);
+            body.putInts(s.offsets, symbolCount + 1);
+            body.putInts(s.hashes, symbolCount);
+            body.putInts(s.slots, s.slots.length);
+            body.putLongs(s.auxiliary.toLongArray(), words(symbolCount));
+            if (horn != null) {
+                body.putLongs(horn.facts.toLongArray(), words(symbolCount));
+                body.putInts(horn.premiseStart, horn.premiseStart.length);
+                body.putInts(horn.premises, horn.premises.length);
+                body.putInts(horn.conclusions, horn.conclusions.length);
+                body.putInts(horn.ruleStart, horn.ruleStart.length);
+                body.putInts(horn.premiseRules, horn.premiseRules.length);
+                body.putInts(horn.concludingStart, horn.concludingStart.length);
+                body.putInts(horn.concludingRules, horn.concludingRules.length);
+            }
+            body.putInts(clauseStart, clauseStart.length);
+            body.putInts(literals, literals.length);
+            body.putBytes(queryBytes, queryBytes.length);
+            body.flush();
+
+            // The header goes in last, once the checksum of the body is known
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(body.crc.getValue())
+                    .putInt((horn != null ? HORN : 0) | (tseitin ? TSEITIN : 0))
+                    .putInt(symbolCount).putInt(s.poolSize).putInt(s.slots.length)
+                    .putInt(horn != null ? horn.ruleCount() : 0).putInt(horn != null ? horn.premises.length : 0)
+                    .putInt(clauseStart.length - 1).putInt(literals.length).putInt(queryBytes.length);
+            header.position(0);
+            for (long position = 0; header.hasRemaining(); ) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+
+    /** Loads a snapshot, checking its version and checksum.
+     * @param filename : The snapshot file.
+     * @return the compiled KB*/
+    public static KBSnapshot load(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer file = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (file.hasRemaining()) {
+                if (channel.read(file) < 0) {
+                    throw new IOException(filename + " is not a KB snapshot");
+                }
+            }
+            if (file.getInt(0) != MAGIC) {
+                throw new IOException(filename + " is not a KB snapshot");
+            }
+            if (file.getInt(4) != VERSION) {
+                throw new IOException(filename + " is a version " + file.getInt(4) + " snapshot, expected version " + VERSION);
+            }
+
+            int flags = file.getInt(16);
+            int symbolCount = file.getInt(20);
+            int poolSize = file.getInt(24);
+            int slotCount = file.getInt(28);
+            int ruleCount = file.getInt(32);
+            int premiseCount = file.getInt(36);
+            int clauseCount = file.getInt(40);
+            int literalCount = file.getInt(44);
+            int queryLength = file.getInt(48);
+
+            Body body = new Body(channel, true);
+            byte[] pool = body.getBytes(poolSize);
+            int[] offsets = body.getInts(symbolCount + 1);
+            int[] hashes = body.getInts(symbolCount);
+            int[] slots = body.getInts(slotCount);
+            BitSet auxiliary = BitSet.valueOf(body.getLongs(words(symbolCount)));
+
+            BitSet facts = null;
+            int[][] horn = null;
+            if ((flags & HORN) != 0) {
+                facts = BitSet.valueOf(body.getLongs(words(symbolCount)));
+                horn = new int[][] {body.getInts(ruleCount + 1), body.getInts(premiseCount), body.getInts(ruleCount),
+                        body.getInts(symbolCount + 1), body.getInts(premiseCount),
+                        body.getInts(symbolCount + 1), body.getInts(ruleCount)};
+            }
+            int[] clauseStart = body.getInts(clauseCount + 1);
+            int[] literals = body.getInts(literalCount);
+            String query = new String(body.getBytes(queryLength), StandardCharsets.UTF_8);
+            if (body.checksum() != file.getLong(8)) {
+                throw new IOException(filename + " is corrupt: checksum mismatch");
+            }
+
+            SymbolTable symbols = new SymbolTable(symbolCount, pool, offsets, hashes, slots, auxiliary);
+            HornKB kb = horn == null ? null
+                    : new HornKB(symbols, facts, horn[0], horn[1], horn[2], horn[3], horn[4], horn[5], horn[6]);
+            return new KBSnapshot(symbols, kb, clauseStart, literals, (flags & TSEITIN) != 0, query);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException(filename + " is corrupt: " + e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KBSnapshot[symbols=" + symbols.size() + ", rules=" + (horn != null ? horn.ruleCount() : "not Horn")
+                + ", clauses=" + (clauseStart.length - 1) + ", query=" + query + "]";
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) / 64;
+    }
+
+    private static long aligned(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /** Body moves the arrays of a snapshot between memory and the file through one direct buffer,
+     * keeping the CRC32 of every byte that goes through it. Sections are padded to 8 bytes, so
+     * every array starts aligned in the file.*/
+    private static final class Body {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+        final CRC32 crc = new CRC32();
+        private long done; // bytes of the body before the start of the buffer
+
+        // Starts writing the body, or reading it when reading is true, at the position of the channel
+        Body(FileChannel channel, boolean reading) {
+            this.channel = channel;
+            if (reading) {
+                buffer.limit(0); // nothing read yet
+            }
+        }
+
+        void putBytes(byte[] bytes, int length) throws IOException {
+            for (int off = 0; off < length; ) {
+                int n = Math.min(length - off, room(1));
+                buffer.put(bytes, off, n);
+                off += n;
+            }
+            pad();
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (int off = 0; off < length; ) {
+                int n = Math.min(length - off, room(4) / 4);
+                buffer.asIntBuffer().put(values, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+            }
+            pad();
+        }
+
+        void putLongs(long[] values, int length) throws IOException {
+            // toLongArray drops trailing zero words, so the missing ones are written as zeros
+            for (int off = 0; off < length; ) {
+                int n = Math.min(length - off, room(8) / 8);
+                for (int i = off; i < off + n; i++) {
+                    buffer.putLong(i < values.length ? values[i] : 0L);
+                }
+                off += n;
+            }
+        }
+
+        // Writes out what the buffer holds
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                done += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int off = 0; off < length; ) {
+                int n = Math.min(length - off, available(1));
+                buffer.get(bytes, off, n);
+                off += n;
+            }
+            skipPadding();
+            return bytes;
+        }
+
+        int[] getInts(int length) throws IOException {
+            int[] values = new int[length];
+            for (int off = 0; off < length; ) {
+                int n = Math.min(length - off, available(4) / 4);
+                buffer.asIntBuffer().get(values, off, n);
+                buffer.position(buffer.position() + 4 * n);
+                off += n;
+            }
+            skipPadding();
+            return values;
+        }
+
+        long[] getLongs(int length) throws IOException {
+            long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                available(8);
+                values[i] = buffer.getLong();
+            }
+            return values;
+        }
+
+        // Reads the rest of the file and returns the CRC32 of the whole body
+        long checksum() throws IOException {
+            buffer.clear(); // what is left unread is in the checksum already
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            return crc.getValue();
+        }
+
+        // Flushes the buffer if it has less than the given room left, and returns the room
+        private int room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer.remaining();
+        }
+
+        // Reads on until the buffer holds at least the given number of unread bytes, and returns how many it holds
+        private int available(int bytes) throws IOException {
+            while (buffer.remaining() < bytes) {
+                int unread = buffer.remaining();
+                done += buffer.position();
+                buffer.compact(); // the unread bytes move to the start
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("The snapshot ends in the middle of an array");
+                }
+                ByteBuffer read = buffer.duplicate();
+                read.flip().position(unread);
+                crc.update(read);
+                buffer.flip();
+            }
+            return buffer.remaining();
+        }
+
+        private void pad() throws IOException {
+            while (((done + buffer.position()) & 7) != 0) {
+                room(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void skipPadding() throws IOException {
+            int skip = (int) (-(done + buffer.position()) & 7);
+            if (skip > 0) {
+                available(skip);
+                buffer.position(buffer.position() + skip);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package me.discordbot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/** KnowledgeBase is a long-lived Horn KB session. Facts and rules are told one at a time, and
+ * the forward closure stays materialized, so asking a query is a single bit lookup. Telling a
+ * fact or a rule only propagates from the new item, semi-naive style, and costs time in
+ * proportion to what it newly derives rather than to the size of the KB.
+ *
+ * Retraction works in the delete and re-derive way: everything that lost a firing rule because
+ * of the retracted item is deleted first, then each deleted symbol that still has another rule
+ * whose premises all hold is derived again and propagated forward. Only the part of the
+ * closure that depended on the retracted item is ever touched.
+ *
+ * A session can be given a ResultCache for the answers of the FC and BC engines, which run on
+ * the KB frozen by toHornKB(). Every change to the session drops the answers about the state
+ * it had before, so an answer is never served for a KB that is gone.*/
+public class KnowledgeBase {
+    private final SymbolTable symbols;
+    private final SentenceParser parser;
+    private final BitSet told = new BitSet();   // facts asserted by the user
+    private final BitSet known = new BitSet();  // told facts and everything derived from them
+
+    private final List<int[]> premises = new ArrayList<>(); // premise ids of each rule
+    private final IntList conclusions = new IntList();
+    private final IntList satisfied = new IntList();        // premise occurrences of each rule that are known
+    private final BitSet retracted = new BitSet();          // rules that have been taken back
+
+    private final List<IntList> byPremise = new ArrayList<>();    // rules per premise symbol, once per occurrence
+    private final List<IntList> byConclusion = new ArrayList<>(); // rules per conclusion symbol
+
+    private final IntList agenda = new IntList();
+
+    private ResultCache cache;  // answers of the engines, null when there is none
+    private HornKB frozen;      // the KB the cached answers are about, null once it has changed
+    private long fingerprint;
+
+    public KnowledgeBase() {
+        this.symbols = new SymbolTable();
+        this.parser = new SentenceParser(symbols);
+    }
+
+    /** Starts a session from a compiled KB, computing its closure once. The session interns into
+     * a copy of the symbol table of the KB, so the KB stays as it is whatever is told later.
+     * @param kb : The compiled Horn KB.*/
+    public KnowledgeBase(HornKB kb) {
+        this.symbols = kb.symbols.copy();
+        this.parser = new SentenceParser(symbols);
+        for (int r = 0; r < kb.ruleCount(); r++) {
+            addRule(Arrays.copyOfRange(kb.premises, kb.premiseStart[r], kb.premiseStart[r + 1]), kb.conclusions[r]);
+        }
+        for (int id = kb.facts.nextSetBit(0); id >= 0; id = kb.facts.nextSetBit(id + 1)) {
+            tellFact(id);
+        }
+    }
+
+    /** Starts a session from an input file.
+     * @param filename : The file with the TELL section.
+     * @return the session*/
+    public static KnowledgeBase load(String filename) throws IOException {
+        return new KnowledgeBase(StreamingParser.parse(filename).hornKB());
+    }
+
+    /** Tells a fact such as "a" or a rule such as "a & b => c".
+     * @param clause : The fact or the rule.
+     * @return the id of the rule, or -1 for a fact*/
+    public int tell(String clause) {
+        byte[] bytes = clause.getBytes(StandardCharsets.UTF_8);
+        if (!parser.parseHorn(bytes, 0, bytes.length)) {
+            throw new IllegalArgumentException("Not a Horn fact or rule: " + clause.trim());
+        }
+        IntList code = parser.code();
+        if (code.size == 1) {
+            tellFact(code.get(0));
+            return -1;
+        }
+
+        // The symbols of the program are the premises in order, then the conclusion
+        IntList ids = new IntList();
+        for (int i = 0; i < code.size - 2; i++) {
+            if (code.get(i) >= 0) {
+                ids.add(code.get(i));
+            }
+        }
+        return addRule(ids.toArray(), code.get(code.size - 2));
+    }
+
+    /** Tells a rule, deriving its conclusion right away if all of its premises are known.
+     * @param rule : The rule, its symbols are interned into this session's symbol table.
+     * @return the id of the rule, to retract it later*/
+    public int tell(Rule rule) {
+        int[] ids = new int[rule.premises.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = symbols.intern(rule.premises.get(i));
+        }
+        return addRule(ids, symbols.intern(rule.conclusion));
+    }
+
+    // This method makes evaluate() keep the answers of the engines in the cache
+    public void setCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    /** Answers a query like the FC or BC engine on the current KB, from the cache when the
+     * session has one and the same KB has been asked the same query before.
+     * @param method : "FC" or "BC".
+     * @param query : The propositional symbol.
+     * @return the answer of the engine*/
+    public String evaluate(String method, String query) {
+        if (frozen == null) {
+            frozen = toHornKB();
+            fingerprint = ResultCache.fingerprint(frozen);
+        }
+        HornKB kb = frozen;
+        Supplier<String> engine;
+        switch (method) {
+            case "FC":
+                engine = () -> ForwardChaining.evaluateFC(kb, query);
+                break;
+            case "BC":
+                engine = () -> BackwardChaining.evaluateBC(kb, query);
+                break;
+            default:
+                throw new IllegalArgumentException("Use FC or BC, not " + method);
+        }
+        return cache == null ? engine.get() : cache.answer(method, fingerprint, query, engine);
+    }
+
+    /** Asks whether the query is entailed by the KB.
+     * @param query : The propositional symbol.
+     * @return true if the query is in the closure*/
+    public boolean ask(String query) {
+        int id = symbols.lookup(query);
+        return id >= 0 && known.get(id);
+    }
+
+    /** Takes back a fact that was told. Whatever can still be derived without it stays known.
+     * @param fact : The fact to retract.*/
+    public void retract(String fact) {
+        int id = symbols.lookup(fact);
+        if (id < 0 || !told.get(id)) {
+            return;
+        }
+        told.clear(id);
+        changed();
+        IntList deleted = new IntList();
+        overdelete(id, deleted);
+        rederive(deleted);
+    }
+
+    /** Takes back a rule that was told.
+     * @param rule : The id returned by tell.*/
+    public void retractRule(int rule) {
+        if (retracted.get(rule)) {
+            return;
+        }
+        retracted.set(rule);
+        changed();
+        int conclusion = conclusions.get(rule);
+        if (satisfied.get(rule) == premises.get(rule).length && !told.get(conclusion)) {
+            IntList deleted = new IntList();
+            overdelete(conclusion, deleted);
+            rederive(deleted);
+        }
+    }
+
+    // This method returns the names of every known symbol, in id order
+    public List<String> closure() {
+        return symbols.names(known);
+    }
+
+    /** Freezes the current state into a compiled KB: the told facts and the live rules. The KB
+     * gets a copy of the symbol table, so telling the session more does not change it.
+     * @return the compiled KB*/
+    public HornKB toHornKB() {
+        SymbolTable frozen = symbols.copy();
+        List<Rule> rules = new ArrayList<>();
+        for (int r = 0; r < conclusions.size; r++) {
+            if (!retracted.get(r)) {
+                List<String> names = new ArrayList<>();
+                for (int premise : premises.get(r)) {
+                    names.add(symbols.name(premise));
+                }
+                rules.add(new Rule(names, symbols.name(conclusions.get(r)), frozen));
+            }
+        }
+        return new HornKB(frozen, (BitSet) told.clone(), rules);
+    }
+
+    private void tellFact(int id) {
+        if (!told.get(id)) {
+            changed();
+        }
+        told.set(id);
+        if (!known.get(id)) {
+            known.set(id);
+            agenda.add(id);
+            propagate();
+        }
+    }
+
+    private int addRule(int[] ids, int conclusion) {
+        changed();
+        int rule = conclusions.size;
+        premises.add(ids);
+        conclusions.add(conclusion);
+        int count = 0;
+        for (int premise : ids) {
+            index(byPremise, premise).add(rule);
+            if (known.get(premise)) {
+                count++;
+            }
+        }
+        index(byConclusion, conclusion).add(rule);
+        satisfied.add(count);
+
+        if (count == ids.length && !known.get(conclusion)) {
+            known.set(conclusion);
+            agenda.add(conclusion);
+            propagate();
+        }
+        return rule;
+    }
+
+    // Forward chaining from the symbols on the agenda, which are already marked known
+    private void propagate() {
+        while (!agenda.isEmpty()) {
+            int symbol = agenda.pop();
+            IntList rules = index(byPremise, symbol);
+            for (int i = 0; i < rules.size; i++) {
+                int rule = rules.get(i);
+                int count = satisfied.get(rule) + 1;
+                satisfied.set(rule, count);
+                int conclusion = conclusions.get(rule);
+                if (count == premises.get(rule).length && !retracted.get(rule) && !known.get(conclusion)) {
+                    known.set(conclusion);
+                    agenda.add(conclusion);
+                }
+            }
+        }
+    }
+
+    // Deletes the symbol and, transitively, every derived symbol whose firing rule loses a premise
+    private void overdelete(int symbol, IntList deleted) {
+        known.clear(symbol);
+        IntList stack = new IntList();
+        stack.add(symbol);
+        while (!stack.isEmpty()) {
+            int s = stack.pop();
+            deleted.add(s);
+            IntList rules = index(byPremise, s);
+            for (int i = 0; i < rules.size; i++) {
+                int rule = rules.get(i);
+                int count = satisfied.get(rule);
+                satisfied.set(rule, count - 1);
+                int conclusion = conclusions.get(rule);
+                if (count == premises.get(rule).length && !retracted.get(rule)
+                        && known.get(conclusion) && !told.get(conclusion)) {
+                    known.clear(conclusion);
+                    stack.add(conclusion);
+                }
+            }
+        }
+    }
+
+    // Derives again every deleted symbol that still has a rule whose premises all hold
+    private void rederive(IntList deleted) {
+        for (int i = 0; i < deleted.size; i++) {
+            int s = deleted.get(i);
+            if (known.get(s)) {
+                continue; // already derived again while propagating
+            }
+            IntList rules = index(byConclusion, s);
+            for (int j = 0; j < rules.size; j++) {
+                int rule = rules.get(j);
+                if (!retracted.get(rule) && satisfied.get(rule) == premises.get(rule).length) {
+                    known.set(s);
+                    agenda.add(s);
+                    propagate();
+                    break;
+                }
+            }
+        }
+    }
+
+    // Drops the cached answers about the KB as it was before a change
+    private void changed() {
+        if (frozen != null) {
+            if (cache != null) {
+                cache.invalidate(fingerprint);
+            }
+            frozen = null;
+        }
+    }
+
+    private static IntList index(List<IntList> index, int symbol) {
+        while (index.size() <= symbol) {
+            index.add(new IntList(1));
+        }
+        return index.get(symbol);
+    }
+}
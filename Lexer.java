@@ -0,0 +1,136 @@
+package me.discordbot;
+
+import java.nio.charset.StandardCharsets;
+
+/** Lexer splits a sentence into tokens, scanning its UTF-8 bytes once without any regex or
+ * substring. Symbols are handed to the symbol table straight from the bytes, so a symbol seen
+ * before costs a hash and a compare. It always holds the current token, which the parser looks
+ * at before deciding to consume it.
+ *
+ * The tokens are the symbols and ~ & || => <=> ( ). A single | is read as ||. Any byte that is
+ * not white space, an operator, a parenthesis or ';' is part of a symbol.*/
+final class Lexer {
+    // Operator tokens double as the operator codes of CompiledSentence
+    static final int SYMBOL = 0;
+    static final int NOT = -1;
+    static final int AND = -2;
+    static final int OR = -3;
+    static final int IMPLIES = -4;
+    static final int IFF = -5;
+    static final int OPEN = -6;
+    static final int CLOSE = -7;
+    static final int END = -8;
+
+    private byte[] input;
+    private int from;
+    private int position;
+    private int end;
+    private int token;
+    private int start; // where the current token starts
+
+    /** Starts reading part of a buffer, positioned on its first token.
+     * @param input : The UTF-8 bytes of the sentence.
+     * @param from : The index of the first byte.
+     * @param to : The index after the last byte.*/
+    void reset(byte[] input, int from, int to) {
+        this.input = input;
+        this.from = from;
+        this.position = from;
+        this.end = to;
+        advance();
+    }
+
+    // This method returns the current token
+    int token() {
+        return token;
+    }
+
+    // Interns the current token, which must be a symbol, and returns its id
+    int intern(SymbolTable symbols) {
+        return symbols.intern(input, start, position);
+    }
+
+    // Moves on to the next token
+    void advance() {
+        while (position < end && isSpace(input[position])) {
+            position++;
+        }
+        start = position;
+        if (position == end) {
+            token = END;
+            return;
+        }
+        byte b = input[position];
+        switch (b) {
+            case '~':
+                position++;
+                token = NOT;
+                return;
+            case '&':
+                position++;
+                token = AND;
+                return;
+            case '|':
+                position += position + 1 < end && input[position + 1] == '|' ? 2 : 1;
+                token = OR;
+                return;
+            case '(':
+                position++;
+                token = OPEN;
+                return;
+            case ')':
+                position++;
+                token = CLOSE;
+                return;
+            case '=':
+                if (position + 1 < end && input[position + 1] == '>') {
+                    position += 2;
+                    token = IMPLIES;
+                    return;
+                }
+                throw error("Unexpected '='");
+            case '<':
+                if (position + 2 < end && input[position + 1] == '=' && input[position + 2] == '>') {
+                    position += 3;
+                    token = IFF;
+                    return;
+                }
+                throw error("Unexpected '<'");
+            default:
+                if (!isSymbolByte(b)) {
+                    throw error("Unexpected '" + (char) b + "'");
+                }
+                while (position < end && isSymbolByte(input[position])) {
+                    position++;
+                }
+                token = SYMBOL;
+        }
+    }
+
+    // Makes an exception about the current token that quotes the whole sentence
+    IllegalArgumentException error(String message) {
+        String sentence = new String(input, from, end - from, StandardCharsets.UTF_8);
+        return new IllegalArgumentException(message + " at " + (start - from) + " in: " + sentence);
+    }
+
+    static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+    }
+
+    private static boolean isSymbolByte(byte b) {
+        switch (b) {
+            case '(':
+            case ')':
+            case '~':
+            case '&':
+            case '|':
+            case '=':
+            case '<':
+            case '>':
+            case ';':
+                return false;
+            default:
+                return !isSpace(b);
+        }
+    }
+}
@@ -1,25 +1,134 @@
 package me.discordbot;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 public class Main {
-    @SuppressWarnings("unchecked")
     public static void main(String[] args) throws IOException {
-//        if (args.length < 2) {
-//            System.out.println("Usage: java Main <filename> <method>");
-//            return;
-//        }
-//
-//        String filename = args[0];
-//        String method = args[1].toUpperCase();
-
-//        String filename = "src/main/java/me/discordbot/test_HornKB.txt";
-//        String filename = "src/main/java/me/discordbot/test14_horn.txt";
-        String filename = "src/main/java/me/discordbot/test_genericKB.txt";
-//        String filename = "src/main/java/me/discordbot/test_genericKB_1.txt";
-//        String filename = "src/main/java/me/discordbot/test1_genericKB.txt";
-        String method = "RES";
+        // --stats prints the counters and phase timers of the run once it is over
+        boolean stats = Arrays.asList(args).contains("--stats");
+        Metrics.setEnabled(stats);
+        run(args);
+        if (stats) {
+            System.out.print(Metrics.snapshot());
+        }
+    }
+
+    static final String USAGE = String.join("\n",
+            "Usage: java Main <filename> <method> [options]",
+            "  method           AUTO, TT, PTT, COUNT, BDD, FC, PFC, BC, DPLL or RES",
+            "  --tseitin        DPLL and RES: Tseitin encoding instead of distributing Or over And",
+            "  --batch          answer every line after the ASK line in one run",
+            "  --queries <file> answer every line of the file in one run, against the KB of filename",
+            "  --cache <n>      batch: keep up to n answers, so a query asked again skips the engine",
+            "  --slice          keep only the part of the KB the query depends on before the engine runs",
+            "  --simplify       TT, COUNT, DPLL and RES: simplify the clauses of the KB first",
+            "  --eliminate      DPLL and RES: simplify and also eliminate variables",
+            "  --snapshot <out> save the compiled KB of filename to out, to load it later as filename",
+            "  --serve <port>   serve the Horn KB of filename on this local port, the method is not needed",
+            "  --load-dir <dir> server: the directory LOAD requests may read KB files from",
+            "  --stats          print the counters and phase timers of the run once it is over");
+
+    @SuppressWarnings("unchecked")
+    private static void run(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        boolean tseitin = false;
+        boolean batch = false;
+        String queryFile = null;
+        String snapshotFile = null;
+        int serverPort = -1;
+        String loadDirectory = null;
+        boolean slice = false;
+        boolean simplify = false;
+        boolean eliminate = false;
+        int cacheSize = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--stats":
+                        break; // read by main
+                    case "--tseitin":
+                        tseitin = true;
+                        break;
+                    case "--batch":
+                        batch = true;
+                        break;
+                    case "--queries":
+                        queryFile = value(args, ++i);
+                        batch = true;
+                        break;
+                    case "--cache":
+                        cacheSize = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--slice":
+                        slice = true;
+                        break;
+                    case "--simplify":
+                        simplify = true;
+                        break;
+                    case "--eliminate":
+                        simplify = true;
+                        eliminate = true;
+                        break;
+                    case "--snapshot":
+                        snapshotFile = value(args, ++i);
+                        break;
+                    case "--serve":
+                        serverPort = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--load-dir":
+                        loadDirectory = value(args, ++i);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        positional.add(args[i]);
+                }
+            }
+            boolean needsMethod = serverPort < 0 && snapshotFile == null;
+            if (positional.isEmpty() || positional.size() > 2 || (needsMethod && positional.size() < 2)) {
+                throw new IllegalArgumentException("Expected a filename" + (needsMethod ? " and a method" : ""));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        String filename = positional.get(0);
+        String method = positional.size() > 1 ? positional.get(1).toUpperCase() : "";
+
+        if (serverPort >= 0) {
+            QueryServer server = new QueryServer(StreamingParser.parse(filename).hornKB(), serverPort,
+                    loadDirectory == null ? null : Paths.get(loadDirectory));
+            System.out.println("Serving " + filename + " on port " + server.port());
+            server.run();
+            return;
+        }
+
+        if (snapshotFile != null) {
+            KBSnapshot.compile(filename, tseitin).save(snapshotFile);
+            System.out.println("Saved " + KBSnapshot.load(snapshotFile) + " to " + snapshotFile);
+            return;
+        }
+        if (KBSnapshot.isSnapshot(filename)) {
+            runSnapshot(KBSnapshot.load(filename), method);
+            return;
+        }
+
+        if (batch) {
+            List<String> queries = queryFile != null
+                    ? InferenceEngine.parseQueryFile(queryFile)
+                    : InferenceEngine.parseQueries(filename);
+            ResultCache cache = cacheSize > 0 ? new ResultCache(cacheSize) : null;
+            runBatch(filename, method, queries, tseitin, cache);
+            if (cache != null) {
+                System.out.println(cache);
+            }
+            return;
+        }
 
         String query = null;
         switch (method) {
@@ -27,59 +136,243 @@ public class Main {
                 Map<String, String> data = InferenceEngine.parseInput(filename);
                 List<String> kb = Arrays.asList(data.get("KB").split(";"));
                 query = data.get("Query");
+                if (slice) {
+                    kb = Slicer.slice(kb, query);
+                }
 
                 System.out.println(kb);
                 System.out.println(query);
                 System.out.println("---------------------");
 
-                System.out.println(TruthTable.evaluateTT(kb, query));
+                if (simplify) {
+                    // Only steps that keep every model, so the count stays the one of the KB
+                    SymbolTable ttSymbols = new SymbolTable();
+                    Simplifier ttSimplifier = Simplifier.forQuery(ttSymbols, CNFConverter.clausesOf(kb, ttSymbols, false), query);
+                    List<int[]> ttClauses = ttSimplifier.simplify(Simplifier.Level.MODELS);
+                    System.out.println(ttSimplifier);
+                    System.out.println(TruthTable.evaluateTT(ttSymbols, ttClauses, query));
+                } else {
+                    System.out.println(TruthTable.evaluateTT(kb, query));
+                }
                 break;
-            case "FC":
-                Map<String, Object> fcData = InferenceEngine.parseInputForChainingAlgorithm(filename);
-                for (String key : fcData.keySet()) {
-                    System.out.println("Key [" + key + "]: " + fcData.get(key).toString());
+            case "PTT":
+                Map<String, String> pttData = InferenceEngine.parseInput(filename);
+                List<String> pttKb = Arrays.asList(pttData.get("KB").split(";"));
+                query = pttData.get("Query");
+                if (slice) {
+                    pttKb = Slicer.slice(pttKb, query);
                 }
+
+                System.out.println(TruthTable.evaluateTTParallel(pttKb, query));
+                break;
+            case "BDD":
+                Map<String, String> bddData = InferenceEngine.parseInput(filename);
+                BDD bdd = BDD.compile(Arrays.asList(bddData.get("KB").split(";")));
+                System.out.println(bdd);
+
+                System.out.println(bdd.ask(bddData.get("Query")));
+                break;
+            case "COUNT":
+                Map<String, String> countData = InferenceEngine.parseInput(filename);
+                List<String> countKb = Arrays.asList(countData.get("KB").split(";"));
+                query = countData.get("Query");
+                if (slice) {
+                    countKb = Slicer.slice(countKb, query);
+                }
+
+                if (simplify) {
+                    SymbolTable countSymbols = new SymbolTable();
+                    Simplifier countSimplifier = Simplifier.forQuery(countSymbols, ModelCounter.countingClauses(countKb, countSymbols), query);
+                    List<int[]> countClauses = countSimplifier.simplify(Simplifier.Level.MODELS);
+                    System.out.println(countSimplifier);
+                    System.out.println(ModelCounter.evaluateCount(countSymbols, countClauses, query));
+                } else {
+                    System.out.println(ModelCounter.evaluateCount(countKb, query));
+                }
+                break;
+            case "FC":
+                StreamingParser fcData = StreamingParser.parse(filename);
+                System.out.println(fcData);
                 System.out.println("---------------------");
 
-                Set<String> factsFC = (Set<String>) fcData.get("facts");
-                List<Rule> rulesFC =  (List<Rule>) fcData.get("rules");
-                query = (String) fcData.get("query");
+                HornKB kbFC = fcData.hornKB();
+                query = fcData.query();
+                if (slice) {
+                    kbFC = Slicer.slice(kbFC, query);
+                }
+
+                System.out.println(ForwardChaining.evaluateFC(kbFC, query));
+                break;
+            case "PFC":
+                StreamingParser pfcData = StreamingParser.parse(filename);
+                HornKB kbPFC = pfcData.hornKB();
+                query = pfcData.query();
+                if (slice) {
+                    kbPFC = Slicer.slice(kbPFC, query);
+                }
 
-                System.out.println(ForwardChaining.evaluateFC(factsFC, rulesFC, query));
+                System.out.println(ForwardChaining.evaluateFCParallel(kbPFC, query));
                 break;
             case "BC":
-                Map<String, Object> bcData = InferenceEngine.parseInputForChainingAlgorithm(filename);
+                StreamingParser bcData = StreamingParser.parse(filename);
+
+                HornKB kbBC = bcData.hornKB();
+                query = bcData.query();
+                if (slice) {
+                    kbBC = Slicer.slice(kbBC, query);
+                }
 
-                Set<String> factsBC = (Set<String>) bcData.get("facts");
-                List<Rule> rulesBC = (List<Rule>) bcData.get("rules");
-                query = (String) bcData.get("query");
+                System.out.println(bcData);
 
-                for (String key : bcData.keySet()) {
-                    System.out.println("Key [" + key + "]: " + bcData.get(key).toString());
+                System.out.println(BackwardChaining.evaluateBC(kbBC, new BitSet(), query));
+                break;
+            case "DPLL":
+                Map<String, String> dpllData = InferenceEngine.parseInput(filename);
+                List<String> dpllKb = Arrays.asList(dpllData.get("KB").split(";"));
+                query = dpllData.get("Query");
+                if (slice) {
+                    dpllKb = Slicer.slice(dpllKb, query);
                 }
 
-                System.out.println(BackwardChaining.evaluateBC(factsBC, rulesBC, new HashSet<>(), query));
+                if (simplify) {
+                    SymbolTable dpllSymbols = new SymbolTable();
+                    Simplifier dpllSimplifier = Simplifier.forQuery(dpllSymbols, CNFConverter.clausesOf(dpllKb, dpllSymbols, tseitin), query);
+                    List<int[]> dpllClauses = dpllSimplifier.simplify(eliminate ? Simplifier.Level.ELIMINATION : Simplifier.Level.SATISFIABILITY);
+                    System.out.println(dpllSimplifier);
+                    System.out.println(DPLL.evaluateDPLL(dpllSymbols, dpllClauses, query, tseitin));
+                } else {
+                    System.out.println(DPLL.evaluateDPLL(dpllKb, query, tseitin));
+                }
                 break;
             case "RES":
                 Map<String, String> parsedData = InferenceEngine.parseInput(filename);
                 List<String> generalKb = Arrays.asList(parsedData.get("KB").split(";"));
-                query = parsedData.get("query");
-
-                List<CNFConverter.Expression> resKb = new ArrayList<>();
+                query = parsedData.get("Query");
+                if (slice) {
+                    generalKb = Slicer.slice(generalKb, query);
+                }
 
                 for (String exp : generalKb) {
+                    if (exp.trim().isEmpty()) {
+                        continue;
+                    }
                     CNFConverter.Expression expression = CNFConverter.parseExpression(exp.trim());
-                    CNFConverter.Expression convertedExpression = CNFConverter.toCNF(expression);
+                    if (tseitin) {
+                        SymbolTable symbols = new SymbolTable();
+                        System.out.println(CNFConverter.toClausesTseitin(expression, symbols, true).size() + " clauses");
+                    } else {
+                        CNFConverter.Expression convertedExpression = CNFConverter.toCNF(expression);
+                        System.out.println(CNFConverter.printExpression(convertedExpression));
+                    }
+                }
+                System.out.println("---------------------");
 
-                    System.out.println(CNFConverter.printExpression(convertedExpression));
-                    resKb.add(convertedExpression);
+                if (simplify) {
+                    SymbolTable resSymbols = new SymbolTable();
+                    Simplifier resSimplifier = Simplifier.forQuery(resSymbols, CNFConverter.clausesOf(generalKb, resSymbols, tseitin), query);
+                    List<int[]> resClauses = resSimplifier.simplify(eliminate ? Simplifier.Level.ELIMINATION : Simplifier.Level.SATISFIABILITY);
+                    System.out.println(resSimplifier);
+                    System.out.println(Resolution.evaluateRES(resSymbols, resClauses, query, tseitin));
+                } else {
+                    System.out.println(Resolution.evaluateRES(generalKb, query, tseitin));
+                }
+                break;
+            case "AUTO":
+                Map<String, String> autoData = InferenceEngine.parseInput(filename);
+                List<String> autoKb = Arrays.asList(autoData.get("KB").split(";"));
+                query = autoData.get("Query");
+                if (slice) {
+                    autoKb = Slicer.slice(autoKb, query);
                 }
 
-                System.out.println(resKb);
+                System.out.println("AUTO chose " + Portfolio.choose(autoKb, query));
+                System.out.println(Portfolio.evaluateAuto(autoKb, query));
                 break;
             default:
-                System.out.println("Invalid method. Use TT, FC, or BC.");
+                System.out.println("Invalid method. Use AUTO, TT, PTT, COUNT, BDD, FC, PFC, BC, DPLL or RES.");
         }
     }
-}
 
+    // Returns the value after an option
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    // Answers the query saved in a snapshot, without parsing any text
+    private static void runSnapshot(KBSnapshot snapshot, String method) {
+        String query = snapshot.query();
+        switch (method) {
+            case "FC":
+            case "BC":
+                if (snapshot.horn() == null) {
+                    System.out.println("The snapshot does not hold a Horn KB.");
+                } else if (method.equals("FC")) {
+                    System.out.println(ForwardChaining.evaluateFC(snapshot.horn(), query));
+                } else {
+                    System.out.println(BackwardChaining.evaluateBC(snapshot.horn(), query));
+                }
+                break;
+            case "DPLL":
+                System.out.println(DPLL.evaluateDPLL(snapshot.symbols(), snapshot.clauses(), query, snapshot.isTseitin()));
+                break;
+            case "RES":
+                System.out.println(Resolution.evaluateRES(snapshot.symbols(), snapshot.clauses(), query, snapshot.isTseitin()));
+                break;
+            default:
+                System.out.println("Invalid snapshot method. Use FC, BC, DPLL or RES.");
+        }
+    }
+
+    // Parses the KB once and streams one "query: answer" line per query, through the cache if there is one
+    private static void runBatch(String filename, String method, List<String> queries, boolean tseitin, ResultCache cache) throws IOException {
+        BiConsumer<String, String> printer = (query, answer) -> System.out.println(query + ": " + answer);
+        BiConsumer<List<String>, BiConsumer<String, String>> engine;
+        long fingerprint;
+        switch (method) {
+            case "TT":
+                List<String> kb = Arrays.asList(InferenceEngine.parseInput(filename).get("KB").split(";"));
+                fingerprint = cache == null ? 0 : ResultCache.fingerprint(kb);
+                engine = (batch, results) -> TruthTable.evaluateTTBatch(kb, batch, results);
+                break;
+            case "BDD":
+                List<String> bddKb = Arrays.asList(InferenceEngine.parseInput(filename).get("KB").split(";"));
+                fingerprint = cache == null ? 0 : ResultCache.fingerprint(bddKb);
+                engine = (batch, results) -> BDD.evaluateBDDBatch(bddKb, batch, results);
+                break;
+            case "FC":
+                HornKB kbFC = StreamingParser.parse(filename).hornKB();
+                fingerprint = cache == null ? 0 : ResultCache.fingerprint(kbFC);
+                engine = (batch, results) -> ForwardChaining.evaluateFCBatch(kbFC, batch, results);
+                break;
+            case "BC":
+                HornKB kbBC = StreamingParser.parse(filename).hornKB();
+                fingerprint = cache == null ? 0 : ResultCache.fingerprint(kbBC);
+                engine = (batch, results) -> BackwardChaining.evaluateBCBatch(kbBC, batch, results);
+                break;
+            case "DPLL":
+            case "RES":
+                List<String> generalKb = Arrays.asList(InferenceEngine.parseInput(filename).get("KB").split(";"));
+                fingerprint = cache == null ? 0 : ResultCache.fingerprint(generalKb);
+                engine = (batch, results) -> {
+                    for (String query : batch) {
+                        results.accept(query, method.equals("DPLL")
+                                ? DPLL.evaluateDPLL(generalKb, query, tseitin)
+                                : Resolution.evaluateRES(generalKb, query, tseitin));
+                    }
+                };
+                break;
+            default:
+                System.out.println("Invalid batch method. Use TT, BDD, FC, BC, DPLL or RES.");
+                return;
+        }
+
+        if (cache == null) {
+            engine.accept(queries, printer);
+        } else {
+            cache.answerBatch(method, fingerprint, queries, engine, printer);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package me.discordbot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Metrics is the instrumentation shared by every engine: counters of the work done, and timers
+ * of the phases a query goes through. Both are off unless stats are enabled, or a JDK Flight
+ * Recorder recording has the events of this class turned on.
+ *
+ * Engines never call into Metrics from their inner loops. They count in local variables or
+ * fields, which costs one register increment, and hand the totals over once per query or per
+ * chunk of work. Each hand-over is a single branch on a static flag when nothing is listening.*/
+public final class Metrics {
+    /** The counters every engine adds to.*/
+    public enum Counter {
+        RULES_FIRED,       // FC: rules whose premises all became known
+        AGENDA_POPS,       // FC: symbols taken off the agenda
+        MODELS_ENUMERATED, // TT: models the KB was evaluated in
+        CLAUSES_GENERATED, // CNF conversion and RES: clauses built
+        CLAUSES_SUBSUMED,  // RES: clauses dropped by forward or backward subsumption
+        BC_HITS,           // BC: subgoals answered from the table
+        BC_MISSES,         // BC: subgoals that had to be searched
+        DECISIONS,         // DPLL: branching decisions
+        CONFLICTS,         // DPLL: conflicts analysed
+        CACHE_HITS,        // ResultCache: queries answered from the cache
+        CACHE_MISSES       // ResultCache: queries that had to run the engine
+    }
+
+    /** The phases a query goes through.*/
+    public enum Phase {
+        READ,      // reading the input file
+        PARSE,     // tokenizing and compiling the KB
+        CNF,       // converting sentences into clauses
+        ENUMERATE, // TT model enumeration
+        CHAIN,     // FC rule firing and BC subgoal search
+        SEARCH     // DPLL and RES proof search
+    }
+
+    private static volatile boolean enabled;
+
+    private static final LongAdder[] COUNTS = new LongAdder[Counter.values().length];
+    private static final LongAdder[] NANOS = new LongAdder[Phase.values().length];
+    static {
+        for (int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i] = new LongAdder();
+        }
+        for (int i = 0; i < NANOS.length; i++) {
+            NANOS[i] = new LongAdder();
+        }
+    }
+
+    private static final EventType PHASE_EVENT = EventType.getEventType(PhaseEvent.class);
+    private static final EventType COUNT_EVENT = EventType.getEventType(CountEvent.class);
+
+    private static final Timer OFF = new Timer(null); // handed out when nothing is listening
+
+    private Metrics() {
+    }
+
+    // This method turns the counters and timers on or off
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // This method tells if the counters and timers are on
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Adds to a counter, and emits a JFR event if a recording asks for it.
+     * @param counter : The counter.
+     * @param amount : The amount to add.*/
+    public static void add(Counter counter, long amount) {
+        if (enabled) {
+            COUNTS[counter.ordinal()].add(amount);
+        }
+        if (COUNT_EVENT.isEnabled() && amount != 0) {
+            CountEvent event = new CountEvent();
+            event.counter = counter.name();
+            event.amount = amount;
+            event.commit();
+        }
+    }
+
+    /** Starts timing a phase. The timer must be stopped by the caller once the phase is over.
+     * @param phase : The phase.
+     * @return the running timer*/
+    public static Timer start(Phase phase) {
+        if (!enabled && !PHASE_EVENT.isEnabled()) {
+            return OFF;
+        }
+        return new Timer(phase);
+    }
+
+    // This method returns the current value of every counter and timer
+    public static Snapshot snapshot() {
+        Map<Counter, Long> counts = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            counts.put(counter, COUNTS[counter.ordinal()].sum());
+        }
+        Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            nanos.put(phase, NANOS[phase.ordinal()].sum());
+        }
+        return new Snapshot(counts, nanos);
+    }
+
+    // This method sets every counter and timer back to zero
+    public static void reset() {
+        for (LongAdder count : COUNTS) {
+            count.reset();
+        }
+        for (LongAdder nanos : NANOS) {
+            nanos.reset();
+        }
+    }
+
+    /** Timer measures one run of a phase, and emits it as a JFR event when stopped.*/
+    public static final class Timer {
+        private final Phase phase;
+        private final long start;
+        private final PhaseEvent event;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.start = phase == null ? 0 : System.nanoTime();
+            this.event = phase == null ? null : new PhaseEvent();
+            if (event != null) {
+                event.begin();
+            }
+        }
+
+        // This method stops the timer, adding the time to its phase
+        public void stop() {
+            if (phase == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (enabled) {
+                NANOS[phase.ordinal()].add(elapsed);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.commit();
+            }
+        }
+    }
+
+    /** Snapshot is a copy of the counters and timers at one point in time.*/
+    public static final class Snapshot {
+        private final Map<Counter, Long> counts;
+        private final Map<Phase, Long> nanos;
+
+        Snapshot(Map<Counter, Long> counts, Map<Phase, Long> nanos) {
+            this.counts = counts;
+            this.nanos = nanos;
+        }
+
+        // This method returns the value of a counter
+        public long count(Counter counter) {
+            return counts.get(counter);
+        }
+
+        // This method returns the time spent in a phase, in nanoseconds
+        public long nanos(Phase phase) {
+            return nanos.get(phase);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("Stats:\n");
+            for (Phase phase : Phase.values()) {
+                if (nanos.get(phase) > 0) {
+                    text.append(String.format("  %-18s %10.3f ms%n", phase.name().toLowerCase(), nanos.get(phase) / 1e6));
+                }
+            }
+            for (Counter counter : Counter.values()) {
+                if (counts.get(counter) > 0) {
+                    text.append(String.format("  %-18s %10d%n", counter.name().toLowerCase(), counts.get(counter)));
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    @Name("me.discordbot.Phase")
+    @Label("Inference Phase")
+    @Category("Inference Engine")
+    @Description("One run of a phase of a query")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("me.discordbot.Count")
+    @Label("Inference Count")
+    @Category("Inference Engine")
+    @Description("Work counted by an engine")
+    static class CountEvent extends Event {
+        @Label("Counter")
+        String counter;
+
+        @Label("Amount")
+        long amount;
+    }
+}
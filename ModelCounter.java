@@ -0,0 +1,348 @@
+package me.discordbot;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/** ModelCounter counts the models of a CNF exactly, without enumerating them, in the style of
+ * sharpSAT. It branches like DPLL and propagates unit clauses, and after every branch it splits
+ * the clauses that are left into connected components, which share no variable, so their counts
+ * multiply. Each component is counted once and cached under its variables and clauses, which is
+ * all that is needed to know what is left of it, so a component met again in another branch
+ * costs a lookup. The count of TT's "YES: count" can then be found for KBs with hundreds of
+ * symbols, far past what enumerating 2^n models can reach.*/
+public class ModelCounter {
+    private static final int UNDEF = -1;
+    static final int CACHE_LIMIT = 1 << 20; // components kept before the cache is cleared
+
+    private final int numVars;
+    private final int[][] clauses;       // sorted, without repeated literals or tautologies
+    private final IntList[] occurrences; // clauses each literal occurs in
+    private boolean unsat;               // an empty clause was given
+
+    // Literal of variable v is 2 * v when positive and 2 * v + 1 when negative, as in DPLL
+    private final int[] assigns;  // per variable: 1 true, 0 false, UNDEF unassigned
+    private final int[] trail;    // literals made true, in order
+    private int trailSize;
+
+    private final int[] varStamp;    // marks of the component search, reset by bumping the stamp
+    private final int[] clauseStamp;
+    private int stamp;
+    private final int[] score;       // scratch for picking the branching variable
+
+    private final Map<Component, BigInteger> cache = new HashMap<>();
+    private long decisions;
+
+    /** Creates a counter over the given clauses.
+     * @param numVars : The number of variables, so literals range over 1..numVars in absolute value.
+     * @param dimacsClauses : The clauses, with literals written as in DIMACS.*/
+    public ModelCounter(int numVars, List<int[]> dimacsClauses) {
+        this.numVars = numVars;
+        occurrences = new IntList[2 * numVars];
+        for (int i = 0; i < occurrences.length; i++) {
+            occurrences[i] = new IntList();
+        }
+
+        List<int[]> kept = new ArrayList<>();
+        for (int[] dimacs : dimacsClauses) {
+            int[] clause = normalize(dimacs);
+            if (clause == null) {
+                continue; // a tautology is true in every model
+            }
+            if (clause.length == 0) {
+                unsat = true;
+            }
+            for (int literal : clause) {
+                occurrences[literal].add(kept.size());
+            }
+            kept.add(clause);
+        }
+        clauses = kept.toArray(new int[0][]);
+
+        assigns = new int[numVars];
+        Arrays.fill(assigns, UNDEF);
+        trail = new int[numVars];
+        varStamp = new int[numVars];
+        clauseStamp = new int[clauses.length];
+        score = new int[numVars];
+    }
+
+    /** Counts the models of a KB where the query is true, over the symbols of the KB and of the
+     * query, and decides entailment. The KB is converted with the full Tseitin encoding, which
+     * extends each model of a sentence in exactly one way, so the count is the one of the
+     * sentences themselves while the clauses stay linear in their size.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return "YES: " followed by the same count as evaluateTT, or "NO"*/
+    public static String evaluateCount(List<String> kb, String query) {
+        SymbolTable symbols = new SymbolTable();
+        return evaluateCount(symbols, countingClauses(kb, symbols), query);
+    }
+
+    /** Same as evaluateCount for a KB whose clauses have already been built. The clauses must
+     * have the same models as the sentences, extended in exactly one way to any auxiliary
+     * symbol, as the ones of countingClauses or of the Simplifier at the MODELS level do.
+     * @param symbols : The symbol table of the clauses, the symbols of the query are interned into it.
+     * @param kbClauses : The clauses of the KB, with literals written as in DIMACS.
+     * @param query : The query to check for entailment.
+     * @return "YES: " followed by the same count as evaluateTT, or "NO"*/
+    public static String evaluateCount(SymbolTable symbols, List<int[]> kbClauses, String query) {
+        // Parsing interns the symbols of the query, those only found there double the count, as in TT
+        CNFConverter.Expression parsedQuery = CNFConverter.parseExpression(query, symbols);
+        int numVars = symbols.size();
+
+        // KB entails query if and only if KB & ~query is unsatisfiable, and then the models of the
+        // KB are exactly the ones where the query is also true
+        List<int[]> refutation = new ArrayList<>(kbClauses);
+        refutation.addAll(CNFConverter.clausesOf(new CNFConverter.Not(parsedQuery), symbols, true, new CNFConverter.Factory()));
+        if (new DPLL(symbols.size(), refutation).solve()) {
+            return "NO";
+        }
+        return "YES: " + new ModelCounter(numVars, kbClauses).count();
+    }
+
+    // This method converts the sentences with the full Tseitin encoding, which keeps their model count
+    static List<int[]> countingClauses(List<String> kb, SymbolTable symbols) {
+        CNFConverter.Factory factory = new CNFConverter.Factory();
+        List<int[]> clauses = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                CNFConverter.Expression expression = CNFConverter.parseExpression(sentence, symbols);
+                clauses.addAll(CNFConverter.toClausesTseitin(expression, symbols, false, factory));
+            }
+        }
+        return clauses;
+    }
+
+    /** Counts the models of the clauses.
+     * @return the number of assignments to all the variables that satisfy every clause*/
+    public BigInteger count() {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.SEARCH);
+        BigInteger count = BigInteger.ZERO;
+        if (!unsat && propagateUnits()) {
+            int[] all = new int[numVars];
+            for (int v = 0; v < numVars; v++) {
+                all[v] = v;
+            }
+            count = countFree(all);
+        }
+        trailSize = 0;
+        Arrays.fill(assigns, UNDEF);
+
+        Metrics.add(Metrics.Counter.DECISIONS, decisions);
+        timer.stop();
+        return count;
+    }
+
+    // Counts the assignments of the unassigned variables among vars that satisfy the clauses they are in
+    private BigInteger countFree(int[] vars) {
+        // Every component is found before any is counted, as counting reuses the stamps
+        List<Component> components = new ArrayList<>();
+        int free = 0; // variables left in no open clause, which can take either value
+        stamp++;
+        IntList componentVars = new IntList();
+        IntList componentClauses = new IntList();
+        for (int start : vars) {
+            if (assigns[start] != UNDEF || varStamp[start] == stamp) {
+                continue;
+            }
+            varStamp[start] = stamp;
+            componentVars.size = 0;
+            componentClauses.size = 0;
+            componentVars.add(start);
+            for (int i = 0; i < componentVars.size; i++) {
+                int v = componentVars.get(i);
+                for (int literal = 2 * v; literal <= 2 * v + 1; literal++) {
+                    IntList occurring = occurrences[literal];
+                    for (int j = 0; j < occurring.size; j++) {
+                        int c = occurring.get(j);
+                        if (clauseStamp[c] == stamp) {
+                            continue;
+                        }
+                        clauseStamp[c] = stamp;
+                        if (isSatisfied(clauses[c])) {
+                            continue;
+                        }
+                        componentClauses.add(c);
+                        for (int other : clauses[c]) {
+                            int u = other >> 1;
+                            if (assigns[u] == UNDEF && varStamp[u] != stamp) {
+                                varStamp[u] = stamp;
+                                componentVars.add(u);
+                            }
+                        }
+                    }
+                }
+            }
+            if (componentClauses.isEmpty()) {
+                free++;
+            } else {
+                components.add(new Component(componentVars.toArray(), componentClauses.toArray()));
+            }
+        }
+
+        BigInteger count = BigInteger.ONE.shiftLeft(free);
+        for (Component component : components) {
+            count = count.multiply(countComponent(component));
+            if (count.signum() == 0) {
+                break; // one component without a model leaves none for the others
+            }
+        }
+        return count;
+    }
+
+    // Counts the models of one component, branching on its variable that occurs in the most of its clauses
+    private BigInteger countComponent(Component component) {
+        BigInteger cached = cache.get(component);
+        if (cached != null) {
+            return cached;
+        }
+
+        int best = component.vars[0];
+        for (int c : component.clauses) {
+            for (int literal : clauses[c]) {
+                int v = literal >> 1;
+                if (assigns[v] == UNDEF && ++score[v] > score[best]) {
+                    best = v;
+                }
+            }
+        }
+        for (int v : component.vars) {
+            score[v] = 0;
+        }
+
+        Cancellation.check();
+        decisions++;
+        BigInteger count = BigInteger.ZERO;
+        for (int literal = 2 * best; literal <= 2 * best + 1; literal++) {
+            int mark = trailSize;
+            assign(literal);
+            if (propagate(mark)) {
+                count = count.add(countFree(component.vars));
+            }
+            while (trailSize > mark) {
+                assigns[trail[--trailSize] >> 1] = UNDEF;
+            }
+        }
+
+        if (cache.size() >= CACHE_LIMIT) {
+            cache.clear();
+        }
+        cache.put(component, count);
+        return count;
+    }
+
+    // Assigns the unit clauses of the input and propagates them, returning false on a conflict
+    private boolean propagateUnits() {
+        for (int[] clause : clauses) {
+            if (clause.length == 1 && !assign(clause[0])) {
+                return false;
+            }
+        }
+        return propagate(0);
+    }
+
+    // Propagates the literals of the trail from the given entry on, returning false on a conflict
+    private boolean propagate(int from) {
+        for (int head = from; head < trailSize; head++) {
+            IntList falsified = occurrences[trail[head] ^ 1];
+            for (int j = 0; j < falsified.size; j++) {
+                int[] clause = clauses[falsified.get(j)];
+                int unassigned = -1;
+                int open = 0;
+                boolean satisfied = false;
+                for (int literal : clause) {
+                    int value = assigns[literal >> 1];
+                    if (value == UNDEF) {
+                        unassigned = literal;
+                        open++;
+                    } else if (value != (literal & 1)) {
+                        satisfied = true;
+                        break;
+                    }
+                }
+                if (satisfied || open > 1) {
+                    continue;
+                }
+                if (open == 0) {
+                    return false;
+                }
+                assign(unassigned);
+            }
+        }
+        return true;
+    }
+
+    // Makes the literal true, returning false if it is already false
+    private boolean assign(int literal) {
+        int v = literal >> 1;
+        if (assigns[v] != UNDEF) {
+            return assigns[v] != (literal & 1);
+        }
+        assigns[v] = 1 - (literal & 1);
+        trail[trailSize++] = literal;
+        return true;
+    }
+
+    private boolean isSatisfied(int[] clause) {
+        for (int literal : clause) {
+            if (assigns[literal >> 1] == 1 - (literal & 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Converts a DIMACS clause into sorted solver literals without repeats, or null if it is a tautology
+    private static int[] normalize(int[] dimacs) {
+        int[] literals = new int[dimacs.length];
+        for (int i = 0; i < dimacs.length; i++) {
+            literals[i] = dimacs[i] > 0 ? 2 * (dimacs[i] - 1) : 2 * (-dimacs[i] - 1) + 1;
+        }
+        Arrays.sort(literals);
+        int size = 0;
+        for (int literal : literals) {
+            if (size > 0 && literals[size - 1] == literal) {
+                continue;
+            }
+            if (size > 0 && literals[size - 1] == (literal ^ 1)) {
+                return null; // x and ~x sort next to each other
+            }
+            literals[size++] = literal;
+        }
+        return Arrays.copyOf(literals, size);
+    }
+
+    /** A component as a cache key: its unassigned variables and its open clauses. Outside the
+     * component every variable of an open clause is assigned and false, so the two of them tell
+     * exactly what is left to count.*/
+    private static final class Component {
+        final int[] vars;    // in the order the search reached them
+        final int[] clauses;
+        private final int[] key;
+        private final int hash;
+
+        Component(int[] vars, int[] clauses) {
+            this.vars = vars;
+            this.clauses = clauses;
+            int[] sortedVars = vars.clone();
+            int[] sortedClauses = clauses.clone();
+            Arrays.sort(sortedVars);
+            Arrays.sort(sortedClauses);
+            key = new int[sortedVars.length + sortedClauses.length + 1];
+            key[0] = sortedVars.length;
+            System.arraycopy(sortedVars, 0, key, 1, sortedVars.length);
+            System.arraycopy(sortedClauses, 0, key, 1 + sortedVars.length, sortedClauses.length);
+            hash = Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Component && Arrays.equals(key, ((Component) other).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
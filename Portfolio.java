@@ -0,0 +1,141 @@
+package me.discordbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Portfolio picks the engine for a KB and a query, for the AUTO method. It parses the KB once
+ * to see whether it is Horn, and how many symbols and sentences it has:
+ *
+ *   a Horn KB and a symbol as query      FC, which is linear in the size of the KB
+ *   at most TT_SYMBOLS symbols           TT, whose 2^n models are then cheaper than any search
+ *   anything else                        a race of DPLL, resolution and, when it is small
+ *                                        enough, TT, each on a thread of its own
+ *
+ * In a race the first engine to answer wins and the others are interrupted. The engines check
+ * the interrupt flag of their thread in their main loops through Cancellation.check() and give up
+ * with a CancellationException, so a losing engine stops within one step of its search instead
+ * of running on to the end in the background.
+ *
+ * The engines give their answers in different forms, "YES: [a, b]" for FC, "YES: 2" for TT and
+ * "YES" for DPLL and resolution, so AUTO only keeps the "YES" or "NO" they all agree on. Its
+ * answer is then the same whichever engine is chosen or wins the race.*/
+public final class Portfolio {
+    static final int TT_SYMBOLS = 16;           // TT alone up to this many symbols
+    static final int RACE_TT_SYMBOLS = 24;      // TT still joins the race up to this many
+    static final int RACE_RES_SENTENCES = 2000; // resolution joins the race up to this many sentences
+
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "portfolio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Portfolio() {
+    }
+
+    /** Using the engine chosen for the KB, this method returns "YES" if KB entails query and
+     * "NO" otherwise, without the details some engines add to their answer.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return "YES" or "NO"*/
+    public static String evaluateAuto(List<String> kb, String query) {
+        SymbolTable symbols = new SymbolTable();
+        String answer;
+        switch (choose(kb, query, symbols)) {
+            case "FC":
+                answer = ForwardChaining.evaluateFC(horn(kb), query);
+                break;
+            case "TT":
+                answer = TruthTable.evaluateTT(kb, query);
+                break;
+            default:
+                answer = race(kb, query, symbols.size());
+        }
+        return answer.startsWith("YES") ? "YES" : "NO";
+    }
+
+    /** Picks the method AUTO runs for the KB and the query.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return "FC", "TT" or "RACE"*/
+    public static String choose(List<String> kb, String query) {
+        return choose(kb, query, new SymbolTable());
+    }
+
+    // Same as choose, interning the symbols of the KB and the query into the given table
+    private static String choose(List<String> kb, String query, SymbolTable symbols) {
+        SentenceParser parser = new SentenceParser(symbols);
+        boolean horn = true;
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+                horn &= parser.parseHorn(bytes, 0, bytes.length);
+            }
+        }
+        parser.compile(query);
+        if (horn && parser.code().size == 1) {
+            return "FC";
+        }
+        return symbols.size() <= TT_SYMBOLS ? "TT" : "RACE";
+    }
+
+    /** Runs DPLL, resolution and TT on the KB at once, as far as their size allows, and returns
+     * the answer of the first one to finish. The others are interrupted.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @param symbolCount : The number of symbols of the KB and the query.
+     * @return the first answer*/
+    static String race(List<String> kb, String query, int symbolCount) {
+        List<Callable<String>> engines = new ArrayList<>();
+        engines.add(() -> DPLL.evaluateDPLL(kb, query, true));
+        if (kb.size() <= RACE_RES_SENTENCES) {
+            engines.add(() -> Resolution.evaluateRES(kb, query, true));
+        }
+        if (symbolCount <= RACE_TT_SYMBOLS) {
+            engines.add(() -> TruthTable.evaluateTT(kb, query));
+        }
+        try {
+            return POOL.invokeAny(engines); // cancels the engines still running once one has answered
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while racing the engines");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Compiles a KB known to be Horn, like StreamingParser does for a file
+    private static HornKB horn(List<String> kb) {
+        SymbolTable symbols = new SymbolTable();
+        SentenceParser parser = new SentenceParser(symbols);
+        IntList code = parser.code();
+        BitSet facts = new BitSet();
+        IntList premiseStart = new IntList();
+        IntList premises = new IntList();
+        IntList conclusions = new IntList();
+        premiseStart.add(0);
+        for (String sentence : kb) {
+            if (sentence.trim().isEmpty()) {
+                continue;
+            }
+            byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+            parser.parseHorn(bytes, 0, bytes.length);
+            if (code.size == 1) {
+                facts.set(code.get(0));
+            } else {
+                for (int i = 0; i < code.size - 2; i++) {
+                    if (code.get(i) >= 0) {
+                        premises.add(code.get(i));
+                    }
+                }
+                conclusions.add(code.get(code.size - 2));
+                premiseStart.add(premises.size);
+            }
+        }
+        return new HornKB(symbols, facts, premiseStart.toArray(), premises.toArray(), conclusions.toArray());
+    }
+}
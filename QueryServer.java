@@ -0,0 +1,211 @@
+package me.discordbot;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** QueryServer answers ASK requests on a Horn KB over a local socket, for any number of clients
+ * at once. The protocol is one request per line and one answer per line, in order:
+ *
+ *   a         answers "YES" or "NO" by forward chaining
+ *   FC a      the same
+ *   BC a      answers like evaluateBC, "YES: [looked at]" or "NO"
+ *   LOAD f    replaces the KB with the one in file f, answers "OK" and the size of the new KB.
+ *             f is resolved in the load directory the server was given, and any file outside of
+ *             it is refused. A server without a load directory refuses every LOAD
+ *
+ * The KB being served is immutable: the compiled HornKB, its forward closure computed once when
+ * it is loaded, and a pool of backward chaining contexts. Each connection gets its own thread,
+ * a virtual thread when the JVM has them, and takes the current KB for every request, so LOAD
+ * swaps in a new KB without ever blocking a query: requests already running finish on the KB
+ * they started with. A BC context is borrowed from the pool for one request and handed back
+ * after, so threads never share one at a time. A context clears its table before each answer
+ * and only its buffers are reused, so an answer never depends on the requests served before.
+ *
+ * Answers go through a ResultCache keyed by the fingerprint of the KB, so a request repeated on
+ * the same KB is a lookup. Replacing the KB drops the answers about the old one.*/
+public class QueryServer implements Closeable {
+    private final AtomicReference<Served> served;
+    private final ServerSocket socket;
+    private final ExecutorService executor;
+    private final Path loadDirectory; // null when LOAD is refused
+    private final ResultCache cache = new ResultCache(ResultCache.DEFAULT_ENTRIES);
+
+    /** Everything a request reads, built once per KB and never changed afterwards.*/
+    static final class Served {
+        final HornKB kb;
+        final long fingerprint;
+        final BitSet closure;
+        final Queue<BackwardChaining.Context> contexts = new ConcurrentLinkedQueue<>();
+
+        Served(HornKB kb) {
+            this.kb = kb;
+            this.fingerprint = ResultCache.fingerprint(kb);
+            this.closure = ForwardChaining.inferAgenda(kb, -1);
+        }
+
+        String forward(String query) {
+            int id = kb.symbols.lookup(query);
+            return id >= 0 && closure.get(id) ? "YES" : "NO";
+        }
+
+        String backward(String query) {
+            BackwardChaining.Context context = contexts.poll();
+            if (context == null) {
+                context = new BackwardChaining.Context(kb);
+            }
+            try {
+                return context.answer(query);
+            } finally {
+                contexts.offer(context);
+            }
+        }
+    }
+
+    /** Opens the server on the loopback address, refusing every LOAD request. Call start() to
+     * accept connections.
+     * @param kb : The compiled Horn KB to serve.
+     * @param port : The port to listen on, or 0 for any free port.*/
+    public QueryServer(HornKB kb, int port) throws IOException {
+        this(kb, port, null);
+    }
+
+    /** Opens the server on the loopback address. Call start() to accept connections.
+     * @param kb : The compiled Horn KB to serve.
+     * @param port : The port to listen on, or 0 for any free port.
+     * @param loadDirectory : The directory LOAD reads KB files from, or null to refuse LOAD.*/
+    public QueryServer(HornKB kb, int port, Path loadDirectory) throws IOException {
+        this.served = new AtomicReference<>(new Served(kb));
+        this.loadDirectory = loadDirectory == null ? null : loadDirectory.toRealPath();
+        this.socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.executor = threadPerTaskExecutor();
+    }
+
+    // The port the server listens on
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    // This method starts accepting connections on a thread of its own and returns right away
+    public void start() {
+        Thread acceptor = new Thread(this::run, "query-server-" + port());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Answers one request in the calling thread, the same way as over the socket.
+     * @param request : The request line.
+     * @return the answer line*/
+    public String ask(String request) {
+        request = request.trim();
+        try {
+            if (request.startsWith("LOAD ")) {
+                HornKB kb = StreamingParser.parse(loadable(request.substring(5).trim()).toString()).hornKB();
+                replace(kb);
+                return "OK " + kb;
+            }
+            Served current = served.get(); // the whole request runs on one version of the KB
+            if (request.startsWith("BC ")) {
+                String query = request.substring(3).trim();
+                return cache.answer("BC", current.fingerprint, query, () -> current.backward(query));
+            }
+            String query = request.startsWith("FC ") ? request.substring(3).trim() : request;
+            return cache.answer("FC", current.fingerprint, query, () -> current.forward(query));
+        } catch (IOException | RuntimeException e) {
+            return "ERROR " + e.getMessage();
+        }
+    }
+
+    /** Serves another KB from now on. The new KB is prepared before the swap, and requests still
+     * running on the old one are left to finish on it.
+     * @param kb : The compiled Horn KB to serve.*/
+    public void replace(HornKB kb) {
+        Served old = served.getAndSet(new Served(kb));
+        cache.invalidate(old.fingerprint);
+    }
+
+    // The cache of the answers, with its hit and miss counts
+    public ResultCache cache() {
+        return cache;
+    }
+
+    // Resolves a file named by LOAD, which must be inside the load directory once links are followed
+    private Path loadable(String name) throws IOException {
+        if (loadDirectory == null) {
+            throw new IllegalArgumentException("LOAD is not enabled on this server");
+        }
+        Path file = loadDirectory.resolve(name).toRealPath();
+        if (!file.startsWith(loadDirectory)) {
+            throw new IllegalArgumentException("LOAD is limited to " + loadDirectory);
+        }
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        executor.shutdownNow();
+    }
+
+    // This method accepts connections on the calling thread until the server is closed
+    public void run() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                executor.execute(() -> serve(client));
+            } catch (SocketException e) {
+                return; // closed
+            } catch (IOException e) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Answers the requests of one connection in order, flushing whenever the client waits for answers
+    private void serve(Socket client) {
+        try (Socket connection = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            connection.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                out.write(ask(line));
+                out.write('\n');
+                if (!in.ready()) {
+                    out.flush(); // answers to pipelined requests go out together
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    // One virtual thread per task when the JVM has them (Java 21), or else a new platform thread
+    // per task, so a connection waiting on its client never holds up another one
+    private static ExecutorService threadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** Resolution is a refutation prover over the CNF clauses of the KB. It adds the negated query
+ * and tries to derive the empty clause with the given-clause algorithm under the set-of-support
+ * strategy: every resolution step uses at least one clause descended from the negated query.
+ * Clauses are sorted arrays of literals (2 * v for symbol v, 2 * v + 1 for its negation), and
+ * a literal to clause index means only clauses holding the complementary literal are tried.
+ * Tautologies are never kept, and new clauses are checked for forward and backward subsumption.
+ * Set-of-support is only complete when the KB itself is satisfiable, so when the set of support
+ * runs dry the KB is checked with the SAT engine before answering NO.*/
+public class Resolution {
+    private final List<int[]> clauses = new ArrayList<>(); // every clause kept, null once subsumed
+    private final List<IntList> occurrences = new ArrayList<>(); // live clauses holding each literal
+    private final BitSet usable = new BitSet();          // clauses that have been resolved upon
+    private final PriorityQueue<Long> setOfSupport = new PriorityQueue<>(); // shortest clauses first
+    private boolean refuted;
+    private long generated; // resolvents that were not tautologies
+    private long subsumed;  // clauses dropped by forward or backward subsumption
+
+    /** Using resolution, this method returns "YES" if KB entails query and "NO" otherwise.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateRES(List<String> kb, String query) {
+        return evaluateRES(kb, query, false);
+    }
+
+    /** Same as evaluateRES, choosing how the sentences are converted into clauses.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query to check for entailment.
+     * @param tseitin : Whether to use the Tseitin encoding instead of distributing Or over And.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateRES(List<String> kb, String query, boolean tseitin) {
+        SymbolTable symbols = new SymbolTable();
+        CNFConverter.Factory factory = new CNFConverter.Factory(); // shared subformulas are converted once
+        List<int[]> kbClauses = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                CNFConverter.Expression expression = CNFConverter.parseExpression(sentence, symbols);
+                kbClauses.addAll(CNFConverter.clausesOf(expression, symbols, tseitin, factory));
+            }
+        }
+
+        CNFConverter.Expression negatedQuery = new CNFConverter.Not(CNFConverter.parseExpression(query, symbols));
+        return entails(symbols, kbClauses, CNFConverter.clausesOf(negatedQuery, symbols, tseitin, factory));
+    }
+
+    /** Same as evaluateRES for a KB whose clauses have already been built, such as the ones
+     * stored in a snapshot.
+     * @param symbols : The symbol table of the clauses, the symbols of the query are interned into it.
+     * @param kbClauses : The clauses of the KB, with literals written as in DIMACS.
+     * @param query : The query to check for entailment.
+     * @param tseitin : Whether to use the Tseitin encoding for the negated query.
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateRES(SymbolTable symbols, List<int[]> kbClauses, String query, boolean tseitin) {
+        CNFConverter.Expression negatedQuery = new CNFConverter.Not(CNFConverter.parseExpression(query, symbols));
+        return entails(symbols, kbClauses, CNFConverter.clausesOf(negatedQuery, symbols, tseitin, new CNFConverter.Factory()));
+    }
+
+    private static String entails(SymbolTable symbols, List<int[]> kbClauses, List<int[]> queryClauses) {
+        if (new Resolution().refute(kbClauses, queryClauses)) {
+            return "YES";
+        }
+        // An unsatisfiable KB entails everything, but no refutation through the negated query shows it
+        return new DPLL(symbols.size(), kbClauses).solve() ? "NO" : "YES";
+    }
+
+    /** Tries to derive the empty clause.
+     * @param kbClauses : The clauses of the KB, with literals written as in DIMACS.
+     * @param supportClauses : The clauses of the negated query, which seed the set of support.
+     * @return true if the empty clause was derived, so the KB entails the query*/
+    public boolean refute(List<int[]> kbClauses, List<int[]> supportClauses) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.SEARCH);
+        search(kbClauses, supportClauses);
+        Metrics.add(Metrics.Counter.CLAUSES_GENERATED, generated);
+        Metrics.add(Metrics.Counter.CLAUSES_SUBSUMED, subsumed);
+        timer.stop();
+        return refuted;
+    }
+
+    // The given-clause loop, until the empty clause is derived or the set of support runs dry
+    private void search(List<int[]> kbClauses, List<int[]> supportClauses) {
+        for (int[] clause : kbClauses) {
+            int index = insert(normalize(clause));
+            if (index >= 0) {
+                usable.set(index);
+            }
+        }
+        for (int[] clause : supportClauses) {
+            int index = insert(normalize(clause));
+            if (index >= 0) {
+                support(index);
+            }
+        }
+
+        while (!refuted && !setOfSupport.isEmpty()) {
+            Cancellation.check();
+            int given = (int) (long) setOfSupport.poll();
+            int[] clause = clauses.get(given);
+            if (clause == null) {
+                continue; // subsumed while it was waiting
+            }
+            usable.set(given);
+
+            for (int lit : clause) {
+                IntList partners = occurrences(lit ^ 1);
+                // Copy the candidates, inserting resolvents may delete or add clauses on this list
+                int[] candidates = partners.toArray();
+                for (int partner : candidates) {
+                    if (!usable.get(partner) || clauses.get(partner) == null || clauses.get(given) == null) {
+                        continue;
+                    }
+                    int[] resolvent = resolve(clause, clauses.get(partner), lit);
+                    if (resolvent == null) {
+                        continue; // tautology
+                    }
+                    generated++;
+                    int index = insert(resolvent);
+                    if (index >= 0) {
+                        support(index);
+                    }
+                    if (refuted) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Queues the clause in the set of support, keyed by its length and then its index
+    private void support(int index) {
+        setOfSupport.add(((long) clauses.get(index).length << 32) | index);
+    }
+
+    // Adds the clause unless it is a tautology or subsumed, and deletes the clauses it subsumes.
+    // Returns its index, or -1 if it was not kept
+    private int insert(int[] clause) {
+        if (clause == null) {
+            return -1;
+        }
+        if (isSubsumed(clause)) {
+            subsumed++;
+            return -1;
+        }
+        if (clause.length == 0) {
+            refuted = true;
+        }
+
+        int index = clauses.size();
+        clauses.add(clause);
+        removeSubsumedBy(clause);
+        for (int lit : clause) {
+            occurrences(lit).add(index);
+        }
+        return index;
+    }
+
+    // Forward subsumption: is there a live clause whose literals are all in this clause?
+    private boolean isSubsumed(int[] clause) {
+        for (int lit : clause) {
+            IntList candidates = occurrences(lit);
+            for (int i = 0; i < candidates.size; i++) {
+                int[] other = clauses.get(candidates.get(i));
+                if (other != null && subsumes(other, clause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Backward subsumption: delete every live clause that contains all literals of this clause
+    private void removeSubsumedBy(int[] clause) {
+        if (clause.length == 0) {
+            return;
+        }
+
+        // Only clauses holding the rarest literal of this clause can be subsumed by it
+        IntList candidates = occurrences(clause[0]);
+        for (int lit : clause) {
+            if (occurrences(lit).size < candidates.size) {
+                candidates = occurrences(lit);
+            }
+        }
+
+        for (int i = 0; i < candidates.size; i++) {
+            int index = candidates.get(i);
+            int[] other = clauses.get(index);
+            if (other != null && subsumes(clause, other)) {
+                subsumed++;
+                clauses.set(index, null);
+                usable.clear(index);
+            }
+        }
+    }
+
+    // Whether every literal of the first sorted clause is in the second one
+    private static boolean subsumes(int[] subset, int[] superset) {
+        if (subset.length > superset.length) {
+            return false;
+        }
+        int j = 0;
+        for (int lit : subset) {
+            while (j < superset.length && superset[j] < lit) {
+                j++;
+            }
+            if (j == superset.length || superset[j] != lit) {
+                return false;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    // Resolves two sorted clauses on the literal of the first one, or returns null for a tautology
+    private static int[] resolve(int[] first, int[] second, int lit) {
+        int[] merged = new int[first.length + second.length - 2];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            int next;
+            if (j == second.length || (i < first.length && first[i] <= second[j])) {
+                next = first[i++];
+            } else {
+                next = second[j++];
+            }
+            if (next == lit || next == (lit ^ 1)) {
+                continue; // the literal resolved upon
+            }
+            if (size > 0 && merged[size - 1] == next) {
+                continue; // same literal in both clauses
+            }
+            if (size > 0 && merged[size - 1] == (next ^ 1)) {
+                return null; // p and ~p are adjacent once sorted
+            }
+            merged[size++] = next;
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    // Converts a DIMACS clause into a sorted literal array, or returns null for a tautology
+    private static int[] normalize(int[] dimacs) {
+        int[] clause = new int[dimacs.length];
+        for (int i = 0; i < dimacs.length; i++) {
+            clause[i] = 2 * (Math.abs(dimacs[i]) - 1) + (dimacs[i] < 0 ? 1 : 0);
+        }
+        Arrays.sort(clause);
+
+        int size = 0;
+        for (int lit : clause) {
+            if (size > 0 && clause[size - 1] == lit) {
+                continue;
+            }
+            if (size > 0 && clause[size - 1] == (lit ^ 1)) {
+                return null;
+            }
+            clause[size++] = lit;
+        }
+        return Arrays.copyOf(clause, size);
+    }
+
+    private IntList occurrences(int lit) {
+        while (occurrences.size() <= lit) {
+            occurrences.add(new IntList());
+        }
+        return occurrences.get(lit);
+    }
+}
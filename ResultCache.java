@@ -0,0 +1,361 @@
+package me.discordbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/** ResultCache keeps the answers of the engines, so a KB and a query that have been asked before
+ * are answered with a hash lookup instead of running the engine again. An answer is stored under
+ * the method, a fingerprint of the KB and the query:
+ *
+ *   the fingerprint     a 64 bit hash of the compiled KB, made once per KB by the caller, so a
+ *                       KB that changes gets another fingerprint and never sees stale answers
+ *   the query           normalized, with the operands of & and || flattened and sorted, so
+ *                       "b & (c & a)" and "a & b & c" share one answer. FC and BC look the query
+ *                       up as a symbol name instead of parsing it, so for them it is its own key
+ *
+ * The cache holds at most maxEntries answers and drops the least recently used one to make room.
+ * An answer can also expire after a time to live. Engines run outside the lock of the cache, so
+ * a slow query never holds up the hits of other threads; two threads missing on the same key at
+ * once both run the engine and store the same answer.*/
+public final class ResultCache {
+    static final int DEFAULT_ENTRIES = 1024;
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int maxEntries;
+    private final long ttlNanos; // 0 when answers never expire
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /** Creates a cache whose answers never expire.
+     * @param maxEntries : The most answers kept at once.*/
+    public ResultCache(int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    /** Creates a cache.
+     * @param maxEntries : The most answers kept at once.
+     * @param ttlMillis : How long an answer is kept, in milliseconds, or 0 to keep it until evicted.*/
+    public ResultCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A cache needs room for at least one answer: " + maxEntries);
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Negative time to live: " + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) { // access order, eldest first
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Answers a query from the cache, or runs the engine and keeps its answer. An engine that
+     * throws keeps nothing.
+     * @param method : The method the engine implements, such as "TT".
+     * @param kb : The fingerprint of the KB, from fingerprint().
+     * @param query : The query.
+     * @param engine : Runs the engine on the KB and the query.
+     * @return the answer of the engine*/
+    public String answer(String method, long kb, String query, Supplier<String> engine) {
+        Key key = new Key(method, kb, normalize(method, query));
+        String answer = lookup(key);
+        if (answer != null) {
+            count(1, 0);
+            return answer;
+        }
+        count(0, 1);
+        answer = engine.get();
+        store(key, answer);
+        return answer;
+    }
+
+    /** Answers a batch of queries, running the batch engine once on the ones that are not in the
+     * cache. A query asked twice in the batch runs once. The answers are handed over in the order
+     * of the queries, once the engine is done.
+     * @param method : The method the engine implements, such as "TT".
+     * @param kb : The fingerprint of the KB, from fingerprint().
+     * @param queries : The queries.
+     * @param engine : Runs the engine on a list of queries, handing over each answer in order.
+     * @param results : Receives each query with its answer, in order.*/
+    public void answerBatch(String method, long kb, List<String> queries,
+                            BiConsumer<List<String>, BiConsumer<String, String>> engine,
+                            BiConsumer<String, String> results) {
+        String[] answers = new String[queries.size()];
+        Map<Key, IntList> waiting = new LinkedHashMap<>(); // positions of each missing query
+        List<String> missed = new ArrayList<>();
+        int hitCount = 0;
+        for (int i = 0; i < answers.length; i++) {
+            Key key = new Key(method, kb, normalize(method, queries.get(i)));
+            answers[i] = lookup(key);
+            if (answers[i] != null) {
+                hitCount++;
+            } else if (waiting.containsKey(key)) {
+                waiting.get(key).add(i);
+                hitCount++; // answered by the same engine run as its first occurrence
+            } else {
+                IntList positions = new IntList();
+                positions.add(i);
+                waiting.put(key, positions);
+                missed.add(queries.get(i));
+            }
+        }
+        count(hitCount, missed.size());
+
+        if (!missed.isEmpty()) {
+            Iterator<Map.Entry<Key, IntList>> next = waiting.entrySet().iterator(); // in the order of missed
+            engine.accept(missed, (query, answer) -> {
+                Map.Entry<Key, IntList> entry = next.next();
+                store(entry.getKey(), answer);
+                IntList positions = entry.getValue();
+                for (int p = 0; p < positions.size; p++) {
+                    answers[positions.get(p)] = answer;
+                }
+            });
+        }
+        for (int i = 0; i < answers.length; i++) {
+            results.accept(queries.get(i), answers[i]);
+        }
+    }
+
+    /** Drops every answer about a KB, such as one that has just been replaced.
+     * @param kb : The fingerprint of the KB.
+     * @return the number of answers dropped*/
+    public synchronized int invalidate(long kb) {
+        int before = entries.size();
+        entries.keySet().removeIf(key -> key.kb == kb);
+        return before - entries.size();
+    }
+
+    // This method drops every answer
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // This method returns the number of answers kept
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // This method returns the number of queries answered from the cache
+    public synchronized long hits() {
+        return hits;
+    }
+
+    // This method returns the number of queries that had to run the engine
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Makes the fingerprint of a KB of sentences. It hashes the postfix program of every
+     * sentence, with the name of each symbol in place of its id, so the same sentences give the
+     * same fingerprint in every run, however they are spaced or split over lines.
+     * @param kb : A list of string sentences parsed.
+     * @return the fingerprint*/
+    public static long fingerprint(List<String> kb) {
+        SymbolTable symbols = new SymbolTable();
+        SentenceParser parser = new SentenceParser(symbols);
+        IntList code = parser.code();
+        long[] names = new long[16]; // hash of each symbol name, by id
+        long hash = SEED;
+        for (String sentence : kb) {
+            if (sentence.trim().isEmpty()) {
+                continue;
+            }
+            byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+            parser.parse(bytes, 0, bytes.length);
+            for (int i = 0; i < code.size; i++) {
+                int op = code.get(i);
+                if (op < 0) {
+                    hash = mix(hash, op);
+                    continue;
+                }
+                if (op >= names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2, op + 1));
+                }
+                if (names[op] == 0) {
+                    names[op] = hash(symbols.name(op));
+                }
+                hash = mix(hash, names[op]);
+            }
+            hash = mix(hash, Lexer.END); // sentence boundary
+        }
+        return hash;
+    }
+
+    /** Makes the fingerprint of a compiled Horn KB from its symbols in id order, its facts and its
+     * rules. The order of the ids is part of it, since FC and BC list symbols in that order.
+     * @param kb : The compiled Horn KB.
+     * @return the fingerprint*/
+    public static long fingerprint(HornKB kb) {
+        long hash = SEED;
+        for (int id = 0; id < kb.symbolCount; id++) {
+            hash = mix(hash, hash(kb.symbols.name(id)));
+        }
+        hash = mix(hash, Lexer.END);
+        for (int id = kb.facts.nextSetBit(0); id >= 0; id = kb.facts.nextSetBit(id + 1)) {
+            hash = mix(hash, id);
+        }
+        hash = mix(hash, Lexer.END);
+        for (int r = 0; r < kb.ruleCount(); r++) {
+            for (int p = kb.premiseStart[r]; p < kb.premiseStart[r + 1]; p++) {
+                hash = mix(hash, kb.premises[p]);
+            }
+            hash = mix(hash, Lexer.IMPLIES);
+            hash = mix(hash, kb.conclusions[r]);
+        }
+        return hash;
+    }
+
+    /** Puts a query in the form it is cached under: & and || chains are flattened and their
+     * operands sorted, <=> has its two sides sorted, and every binary operator is parenthesised.
+     * FC and BC look the query up as it is, so for them it is left alone.
+     * @param method : The method the query is asked with.
+     * @param query : The query.
+     * @return the normalized query*/
+    static String normalize(String method, String query) {
+        switch (method) {
+            case "FC":
+            case "PFC":
+            case "BC":
+                return query;
+            default:
+                return canonical(new SentenceParser(new SymbolTable()).expression(query));
+        }
+    }
+
+    // Writes an expression with the operands of its commutative operators in sorted order
+    private static String canonical(CNFConverter.Expression expression) {
+        if (expression instanceof CNFConverter.Variable) {
+            return ((CNFConverter.Variable) expression).name;
+        }
+        if (expression instanceof CNFConverter.Not) {
+            return "~" + canonical(((CNFConverter.Not) expression).expr);
+        }
+        if (expression instanceof CNFConverter.Implies) {
+            CNFConverter.Implies implies = (CNFConverter.Implies) expression;
+            return "(" + canonical(implies.left) + " => " + canonical(implies.right) + ")";
+        }
+        if (expression instanceof CNFConverter.Biconditional) {
+            CNFConverter.Biconditional iff = (CNFConverter.Biconditional) expression;
+            String left = canonical(iff.left);
+            String right = canonical(iff.right);
+            return left.compareTo(right) <= 0 ? "(" + left + " <=> " + right + ")" : "(" + right + " <=> " + left + ")";
+        }
+
+        // Collect the operands of the whole chain of the same operator, without recursing along it
+        Class<?> operator = expression.getClass();
+        List<String> operands = new ArrayList<>();
+        Deque<CNFConverter.Expression> pending = new ArrayDeque<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            CNFConverter.Expression next = pending.pop();
+            if (next.getClass() != operator) {
+                operands.add(canonical(next));
+            } else if (next instanceof CNFConverter.And) {
+                pending.push(((CNFConverter.And) next).right);
+                pending.push(((CNFConverter.And) next).left);
+            } else {
+                pending.push(((CNFConverter.Or) next).right);
+                pending.push(((CNFConverter.Or) next).left);
+            }
+        }
+        Collections.sort(operands);
+        return "(" + String.join(operator == CNFConverter.And.class ? " & " : " || ", operands) + ")";
+    }
+
+    private synchronized String lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.stored > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            return null;
+        }
+        return entry.answer;
+    }
+
+    private synchronized void store(Key key, String answer) {
+        entries.put(key, new Entry(answer, System.nanoTime()));
+    }
+
+    private synchronized void count(long hitCount, long missCount) {
+        hits += hitCount;
+        misses += missCount;
+        Metrics.add(Metrics.Counter.CACHE_HITS, hitCount);
+        Metrics.add(Metrics.Counter.CACHE_MISSES, missCount);
+    }
+
+    // A 64 bit FNV-1a hash of a symbol name, never 0
+    private static long hash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * 0x100000001B3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * SEED;
+        return hash ^ (hash >>> 31);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache[entries=" + entries.size() + "/" + maxEntries + ", hits=" + hits + ", misses=" + misses
+                + ", evicted=" + evictions + ", expired=" + expirations + "]";
+    }
+
+    /** A cached answer is looked up by the method, the KB and the normalized query.*/
+    private static final class Key {
+        final String method;
+        final long kb;
+        final String query;
+        private final int hash;
+
+        Key(String method, long kb, String query) {
+            this.method = method;
+            this.kb = kb;
+            this.query = query;
+            this.hash = 31 * (31 * method.hashCode() + Long.hashCode(kb)) + query.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return hash == other.hash && kb == other.kb && method.equals(other.method) && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final String answer;
+        final long stored; // System.nanoTime() when the answer was stored
+
+        Entry(String answer, long stored) {
+            this.answer = answer;
+            this.stored = stored;
+        }
+    }
+}
@@ -9,11 +9,25 @@ public class Rule {
     List<String> premises; // List of premises
     String conclusion;     // The conclusion
 
+    int[] premiseIds;      // Interned ids of the premises, null until the rule is interned
+    int conclusionId = -1; // Interned id of the conclusion
+
     public Rule(List<String> premises, String conclusion) {
         this.premises = premises;
         this.conclusion = conclusion;
     }
 
+    /** Creates a rule whose symbols are interned into the given symbol table, so the rule also
+     * carries its compact form of int premises and an int conclusion.*/
+    public Rule(List<String> premises, String conclusion, SymbolTable symbols) {
+        this(premises, conclusion);
+        this.premiseIds = new int[premises.size()];
+        for (int i = 0; i < premiseIds.length; i++) {
+            premiseIds[i] = symbols.intern(premises.get(i));
+        }
+        this.conclusionId = symbols.intern(conclusion);
+    }
+
     @Override
     public String toString() {
         return "\nPremises: " + premises.toString() + "\nConclusion: " + conclusion;
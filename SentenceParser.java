@@ -0,0 +1,183 @@
+package me.discordbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** SentenceParser is the one parser every engine reads sentences with. It is a Pratt parser over
+ * the tokens of the Lexer: a symbol, a negation or a parenthesised sentence is read first, then
+ * binary operators are folded in for as long as they bind at least as tight as the caller asked
+ * for. Precedence from tightest to loosest is ~, &, ||, =>, <=>; & and || group to the left,
+ * => and <=> to the right, so "a => b => c" is "a => (b => c)".
+ *
+ * The parse is written out as a postfix program over interned symbol ids, the form TT evaluates
+ * models with. Expressions for the CNF conversion and the rules of a Horn KB are both read off
+ * that program, so they always agree with TT on what a sentence means. A parser keeps its
+ * buffers from one sentence to the next, so reusing one for a whole KB allocates almost nothing.*/
+final class SentenceParser {
+    private final SymbolTable symbols;
+    private final Lexer lexer = new Lexer();
+    private final IntList code = new IntList(16); // the postfix program of the last sentence
+    private CNFConverter.Variable[] variables = new CNFConverter.Variable[16]; // one node per symbol id
+
+    /** Creates a parser that interns symbols into the given table.
+     * @param symbols : The symbol table.*/
+    SentenceParser(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /** Parses a sentence into its postfix program: a symbol id pushes its value, and the codes of
+     * Lexer.NOT to Lexer.IFF apply their operator to the values on top.
+     * @param sentence : The sentence.
+     * @return the program*/
+    int[] compile(String sentence) {
+        byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+        parse(bytes, 0, bytes.length);
+        return code.toArray();
+    }
+
+    /** Parses part of a buffer, leaving its postfix program in code().
+     * @param input : The UTF-8 bytes of the sentence.
+     * @param from : The index of the first byte.
+     * @param to : The index after the last byte.*/
+    void parse(byte[] input, int from, int to) {
+        code.clear();
+        lexer.reset(input, from, to);
+        parse(precedence(Lexer.IFF));
+        if (lexer.token() == Lexer.CLOSE) {
+            throw lexer.error("Unbalanced ')'");
+        }
+        if (lexer.token() != Lexer.END) {
+            throw lexer.error("Expected an operator");
+        }
+    }
+
+    // The postfix program of the last sentence parsed
+    IntList code() {
+        return code;
+    }
+
+    /** Parses a sentence into an expression tree. Every occurrence of a symbol is the same
+     * Variable node, named by the interned string of the symbol table.
+     * @param sentence : The sentence.
+     * @return the expression*/
+    CNFConverter.Expression expression(String sentence) {
+        byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+        parse(bytes, 0, bytes.length);
+
+        // Run the program with expressions as values, so no tree is walked recursively
+        CNFConverter.Expression[] stack = new CNFConverter.Expression[code.size];
+        int top = -1;
+        for (int i = 0; i < code.size; i++) {
+            int op = code.get(i);
+            if (op >= 0) {
+                stack[++top] = variable(op);
+            } else if (op == Lexer.NOT) {
+                stack[top] = new CNFConverter.Not(stack[top]);
+            } else {
+                CNFConverter.Expression right = stack[top--];
+                stack[top] = binary(op, stack[top], right);
+            }
+        }
+        return stack[0];
+    }
+
+    /** Parses a clause of a Horn KB, which is a fact "a" or a rule such as "a & b => c", leaving
+     * its program in code(). The symbols of the program are then the premises in order followed
+     * by the conclusion, or the fact alone.
+     * @param input : The UTF-8 bytes of the clause.
+     * @param from : The index of the first byte.
+     * @param to : The index after the last byte.
+     * @return true if the clause is a fact or a rule, false if it is some other sentence*/
+    boolean parseHorn(byte[] input, int from, int to) {
+        parse(input, from, to);
+        int size = code.size;
+        if (size == 1) {
+            return true;
+        }
+        if (code.get(size - 1) != Lexer.IMPLIES || code.get(size - 2) < 0) {
+            return false;
+        }
+        for (int i = 0; i < size - 2; i++) {
+            if (code.get(i) < 0 && code.get(i) != Lexer.AND) {
+                return false; // the premises must be a conjunction of symbols
+            }
+        }
+        return true;
+    }
+
+    // Reads a sentence whose binary operators bind at least as tight as the given precedence
+    private void parse(int minPrecedence) {
+        switch (lexer.token()) {
+            case Lexer.SYMBOL:
+                code.add(lexer.intern(symbols));
+                lexer.advance();
+                break;
+            case Lexer.NOT:
+                lexer.advance();
+                parse(precedence(Lexer.NOT)); // binds tighter than any binary operator
+                code.add(Lexer.NOT);
+                break;
+            case Lexer.OPEN:
+                lexer.advance();
+                parse(precedence(Lexer.IFF));
+                if (lexer.token() != Lexer.CLOSE) {
+                    throw lexer.error(lexer.token() == Lexer.END ? "Unbalanced '('" : "Expected an operator");
+                }
+                lexer.advance();
+                break;
+            default:
+                throw lexer.error("Expected a symbol");
+        }
+
+        while (true) {
+            int operator = lexer.token();
+            if (operator > Lexer.AND || operator < Lexer.IFF || precedence(operator) < minPrecedence) {
+                return; // not a binary operator, or one that binds looser than the caller's
+            }
+            lexer.advance();
+            boolean rightGrouping = operator == Lexer.IMPLIES || operator == Lexer.IFF;
+            parse(rightGrouping ? precedence(operator) : precedence(operator) + 1);
+            code.add(operator);
+        }
+    }
+
+    private CNFConverter.Variable variable(int id) {
+        if (id >= variables.length) {
+            variables = Arrays.copyOf(variables, Math.max(variables.length * 2, id + 1));
+        }
+        if (variables[id] == null) {
+            variables[id] = new CNFConverter.Variable(symbols.name(id));
+        }
+        return variables[id];
+    }
+
+    private static CNFConverter.Expression binary(int op, CNFConverter.Expression left, CNFConverter.Expression right) {
+        switch (op) {
+            case Lexer.AND:
+                return new CNFConverter.And(left, right);
+            case Lexer.OR:
+                return new CNFConverter.Or(left, right);
+            case Lexer.IMPLIES:
+                return new CNFConverter.Implies(left, right);
+            case Lexer.IFF:
+                return new CNFConverter.Biconditional(left, right);
+            default:
+                throw new IllegalStateException("Unknown operator code: " + op);
+        }
+    }
+
+    static int precedence(int operator) {
+        switch (operator) {
+            case Lexer.NOT:
+                return 5;
+            case Lexer.AND:
+                return 4;
+            case Lexer.OR:
+                return 3;
+            case Lexer.IMPLIES:
+                return 2;
+            default:
+                return 1; // IFF
+        }
+    }
+}
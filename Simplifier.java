@@ -0,0 +1,463 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** Simplifier shrinks a set of CNF clauses before an engine runs on it, the way SAT solvers
+ * preprocess their input. The steps are, from the ones that keep every model to the ones that
+ * only keep satisfiability:
+ *
+ *   MODELS          drops tautologies, repeated literals and repeated clauses, propagates unit
+ *                   clauses (keeping the units themselves), deletes subsumed clauses and
+ *                   strengthens clauses by self-subsuming resolution
+ *   SATISFIABILITY  also deletes the clauses of pure literals
+ *   ELIMINATION     also eliminates variables by resolution, when that does not add clauses
+ *
+ * MODELS leaves a clause set with exactly the same models over the same variables, so it is the
+ * only level that may run before TT or the model counter. The other levels never touch a frozen
+ * variable, so with the symbols of the query frozen the KB entails the query exactly when the
+ * simplified clauses do, which is all DPLL and resolution need.*/
+public class Simplifier {
+    static final int MAX_OCCURRENCES = 16; // variables in more clauses are not eliminated
+    static final int MAX_RESOLVENT = 20;   // nor the ones whose elimination makes a longer clause
+
+    /** How far the clauses may be changed.*/
+    public enum Level { MODELS, SATISFIABILITY, ELIMINATION }
+
+    private final List<int[]> clauses = new ArrayList<>(); // sorted solver literals, null once deleted
+    private final IntList[] occurrences; // clauses each literal occurs in, cleaned up lazily
+    private final int[] counts;          // live clauses each literal occurs in
+    private final BitSet frozen = new BitSet();
+    private final int[] values;          // per variable: 1 true, 0 false, -1 unassigned
+    private final IntList units = new IntList(); // literals made true by unit propagation
+    private int unitHead;
+    private final IntList queue = new IntList(); // clauses to check for subsumption
+    private final BitSet queued = new BitSet();
+    private BitSet touched = new BitSet(); // variables whose clauses changed since pure literals and elimination last looked
+    private boolean unsat;
+
+    private final int clausesBefore;
+    private final long literalsBefore;
+    private final int varsBefore;
+    private int tautologies;
+    private int duplicates;
+    private int subsumed;
+    private int strengthened;
+    private int pure;
+    private int eliminated;
+    private List<int[]> result;
+
+    /** Creates a simplifier over the given clauses.
+     * @param numVars : The number of variables, so literals range over 1..numVars in absolute value.
+     * @param dimacsClauses : The clauses, with literals written as in DIMACS.*/
+    public Simplifier(int numVars, List<int[]> dimacsClauses) {
+        occurrences = new IntList[2 * numVars];
+        for (int i = 0; i < occurrences.length; i++) {
+            occurrences[i] = new IntList();
+        }
+        counts = new int[2 * numVars];
+        values = new int[numVars];
+        Arrays.fill(values, -1);
+
+        long literals = 0;
+        BitSet vars = new BitSet();
+        for (int[] dimacs : dimacsClauses) {
+            literals += dimacs.length;
+            for (int literal : dimacs) {
+                vars.set(Math.abs(literal) - 1);
+            }
+            int[] clause = normalize(dimacs);
+            if (clause == null) {
+                tautologies++;
+            } else {
+                add(clause);
+            }
+        }
+        clausesBefore = dimacsClauses.size();
+        literalsBefore = literals;
+        varsBefore = vars.cardinality();
+    }
+
+    /** Creates a simplifier over the clauses of a KB, with the symbols of the query frozen.
+     * @param symbols : The symbol table of the clauses, the symbols of the query are interned into it.
+     * @param kbClauses : The clauses of the KB, with literals written as in DIMACS.
+     * @param query : The query the simplified clauses will be asked.
+     * @return the simplifier*/
+    public static Simplifier forQuery(SymbolTable symbols, List<int[]> kbClauses, String query) {
+        BitSet querySymbols = CompiledSentence.compile(query, symbols).symbols();
+        Simplifier simplifier = new Simplifier(symbols.size(), kbClauses);
+        simplifier.frozen.or(querySymbols);
+        return simplifier;
+    }
+
+    // This method keeps the variable, counted from 0, out of pure literal deletion and elimination
+    public void freeze(int var) {
+        frozen.set(var);
+    }
+
+    /** Simplifies the clauses. It can only be called once.
+     * @param level : How far the clauses may be changed.
+     * @return the simplified clauses with literals written as in DIMACS, a single empty clause if they have no model*/
+    public List<int[]> simplify(Level level) {
+        if (result != null) {
+            throw new IllegalStateException("Already simplified");
+        }
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.CNF);
+        removeDuplicates();
+        for (int c = 0; c < clauses.size(); c++) {
+            enqueue(c);
+        }
+        while (!unsat) {
+            propagate();
+            while (!unsat && !queue.isEmpty()) {
+                int c = queue.pop();
+                queued.clear(c);
+                if (clauses.get(c) != null) {
+                    subsume(c);
+                    propagate();
+                }
+            }
+            if (unsat) {
+                break;
+            }
+            BitSet candidates = touched;
+            touched = new BitSet();
+            boolean changed = level != Level.MODELS && deletePure(candidates);
+            if (level == Level.ELIMINATION) {
+                changed |= eliminate(candidates);
+            }
+            if (!changed && queue.isEmpty() && unitHead == units.size) {
+                break;
+            }
+        }
+
+        result = new ArrayList<>();
+        if (unsat) {
+            result.add(new int[0]);
+        } else {
+            for (int i = 0; i < units.size; i++) {
+                result.add(new int[] {toDimacs(units.get(i))});
+            }
+            for (int[] clause : clauses) {
+                if (clause != null) {
+                    int[] dimacs = new int[clause.length];
+                    for (int i = 0; i < clause.length; i++) {
+                        dimacs[i] = toDimacs(clause[i]);
+                    }
+                    result.add(dimacs);
+                }
+            }
+        }
+        Metrics.add(Metrics.Counter.CLAUSES_SUBSUMED, subsumed);
+        timer.stop();
+        return result;
+    }
+
+    // Drops the repeated clauses. Clauses are sorted by hash, so equal ones end up in the same run
+    private void removeDuplicates() {
+        long[] keys = new long[clauses.size()];
+        for (int c = 0; c < keys.length; c++) {
+            keys[c] = ((long) Arrays.hashCode(clauses.get(c)) << 32) | c;
+        }
+        Arrays.sort(keys);
+        for (int start = 0, end; start < keys.length; start = end) {
+            for (end = start + 1; end < keys.length && (keys[end] >>> 32) == (keys[start] >>> 32); end++) {
+                int c = (int) keys[end];
+                for (int i = start; i < end; i++) {
+                    int[] earlier = clauses.get((int) keys[i]);
+                    if (earlier != null && Arrays.equals(earlier, clauses.get(c))) {
+                        delete(c);
+                        duplicates++;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Makes every unit true: deletes the clauses it satisfies and removes its negation from the others
+    private void propagate() {
+        while (!unsat && unitHead < units.size) {
+            int literal = units.get(unitHead++);
+            IntList satisfied = live(literal);
+            for (int i = satisfied.size - 1; i >= 0; i--) {
+                delete(satisfied.get(i));
+            }
+            IntList falsified = live(literal ^ 1);
+            for (int i = falsified.size - 1; i >= 0 && !unsat; i--) {
+                strengthen(falsified.get(i), literal ^ 1);
+            }
+        }
+    }
+
+    // Deletes or strengthens every clause that the given clause subsumes, or nearly subsumes with
+    // one literal negated. Every such clause holds the variable of the given clause that occurs least.
+    private void subsume(int c) {
+        int[] clause = clauses.get(c);
+        int best = clause[0];
+        for (int literal : clause) {
+            if (counts[literal] + counts[literal ^ 1] < counts[best] + counts[best ^ 1]) {
+                best = literal;
+            }
+        }
+        for (int literal = best & ~1; literal <= (best | 1); literal++) {
+            IntList candidates = live(literal); // deleting and strengthening leave the list as it is
+            for (int k = 0; k < candidates.size; k++) {
+                int d = candidates.get(k);
+                int[] other = clauses.get(d);
+                if (d == c || other == null || other.length < clause.length || clauses.get(c) == null) {
+                    continue;
+                }
+                int flipped = -1; // the literal of the other clause that is negated in this one
+                boolean contained = true;
+                for (int l : clause) {
+                    if (Arrays.binarySearch(other, l) >= 0) {
+                        continue;
+                    }
+                    if (flipped < 0 && Arrays.binarySearch(other, l ^ 1) >= 0) {
+                        flipped = l ^ 1;
+                    } else {
+                        contained = false;
+                        break;
+                    }
+                }
+                if (!contained) {
+                    continue;
+                }
+                if (flipped < 0) {
+                    delete(d);
+                    subsumed++;
+                } else {
+                    strengthen(d, flipped);
+                    strengthened++;
+                    if (unsat) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Deletes the clauses of every literal whose negation occurs nowhere, as making it true satisfies them
+    private boolean deletePure(BitSet candidates) {
+        boolean changed = false;
+        for (int v = candidates.nextSetBit(0); v >= 0; v = candidates.nextSetBit(v + 1)) {
+            if (frozen.get(v) || values[v] >= 0) {
+                continue;
+            }
+            for (int literal = 2 * v; literal <= 2 * v + 1; literal++) {
+                if (counts[literal] > 0 && counts[literal ^ 1] == 0) {
+                    IntList satisfied = live(literal);
+                    for (int i = satisfied.size - 1; i >= 0; i--) {
+                        delete(satisfied.get(i));
+                    }
+                    pure++;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Replaces the clauses of a variable by all their resolvents on it, for every variable where
+    // that does not make more clauses. The result is satisfiable exactly when the clauses were.
+    private boolean eliminate(BitSet candidates) {
+        boolean changed = false;
+        for (int v = candidates.nextSetBit(0); v >= 0 && !unsat; v = candidates.nextSetBit(v + 1)) {
+            int positive = counts[2 * v];
+            int negative = counts[2 * v + 1];
+            if (frozen.get(v) || values[v] >= 0 || positive == 0 || negative == 0
+                    || positive + negative > MAX_OCCURRENCES) {
+                continue;
+            }
+            int[] positives = live(2 * v).toArray();
+            int[] negatives = live(2 * v + 1).toArray();
+            List<int[]> resolvents = new ArrayList<>();
+            boolean worthIt = true;
+            for (int p : positives) {
+                for (int n : negatives) {
+                    int[] resolvent = resolve(clauses.get(p), clauses.get(n), 2 * v);
+                    if (resolvent == null) {
+                        continue; // tautology
+                    }
+                    if (resolvents.size() == positive + negative || resolvent.length > MAX_RESOLVENT) {
+                        worthIt = false;
+                        break;
+                    }
+                    resolvents.add(resolvent);
+                }
+                if (!worthIt) {
+                    break;
+                }
+            }
+            if (!worthIt) {
+                continue;
+            }
+
+            for (int p : positives) {
+                delete(p);
+            }
+            for (int n : negatives) {
+                delete(n);
+            }
+            for (int[] resolvent : resolvents) {
+                enqueue(add(resolvent));
+            }
+            eliminated++;
+            changed = true;
+            propagate();
+        }
+        return changed;
+    }
+
+    // Adds a sorted clause without repeated literals, returning its index
+    private int add(int[] clause) {
+        int c = clauses.size();
+        clauses.add(clause);
+        for (int literal : clause) {
+            occurrences[literal].add(c);
+            counts[literal]++;
+            touched.set(literal >> 1);
+        }
+        if (clause.length == 0) {
+            unsat = true;
+        } else if (clause.length == 1) {
+            assign(clause[0]);
+        }
+        return c;
+    }
+
+    private void delete(int c) {
+        for (int literal : clauses.get(c)) {
+            counts[literal]--;
+            touched.set(literal >> 1);
+        }
+        clauses.set(c, null);
+    }
+
+    // Removes a false literal from the clause, which may leave a unit or the empty clause
+    private void strengthen(int c, int literal) {
+        int[] clause = clauses.get(c);
+        int[] shorter = new int[clause.length - 1];
+        int size = 0;
+        for (int l : clause) {
+            if (l != literal) {
+                shorter[size++] = l;
+            }
+        }
+        clauses.set(c, shorter);
+        counts[literal]--;
+        touched.set(literal >> 1);
+        if (shorter.length == 0) {
+            unsat = true;
+        } else if (shorter.length == 1) {
+            assign(shorter[0]);
+        }
+        enqueue(c);
+    }
+
+    // Records the literal as true, to be propagated, or notes the conflict if it is already false
+    private void assign(int literal) {
+        int v = literal >> 1;
+        if (values[v] < 0) {
+            values[v] = 1 - (literal & 1);
+            units.add(literal);
+        } else if (values[v] != 1 - (literal & 1)) {
+            unsat = true;
+        }
+    }
+
+    private void enqueue(int c) {
+        if (!queued.get(c)) {
+            queued.set(c);
+            queue.add(c);
+        }
+    }
+
+    // Returns the clauses that still hold the literal, dropping the entries that went stale
+    private IntList live(int literal) {
+        IntList list = occurrences[literal];
+        int size = 0;
+        for (int i = 0; i < list.size; i++) {
+            int c = list.get(i);
+            int[] clause = clauses.get(c);
+            if (clause != null && Arrays.binarySearch(clause, literal) >= 0) {
+                list.set(size++, c);
+            }
+        }
+        list.size = size;
+        return list;
+    }
+
+    // Resolves two sorted clauses on the literal, which the first one holds and the second one holds
+    // negated. Returns null if the resolvent is a tautology
+    private static int[] resolve(int[] first, int[] second, int literal) {
+        int[] merged = new int[first.length + second.length - 2];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            int next;
+            if (j == second.length || (i < first.length && first[i] <= second[j])) {
+                next = first[i++];
+            } else {
+                next = second[j++];
+            }
+            if ((next >> 1) == (literal >> 1)) {
+                continue;
+            }
+            if (size > 0 && merged[size - 1] == next) {
+                continue;
+            }
+            if (size > 0 && merged[size - 1] == (next ^ 1)) {
+                return null;
+            }
+            merged[size++] = next;
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    // Converts a DIMACS clause into sorted solver literals without repeats, or null if it is a tautology
+    private static int[] normalize(int[] dimacs) {
+        int[] literals = new int[dimacs.length];
+        for (int i = 0; i < dimacs.length; i++) {
+            literals[i] = dimacs[i] > 0 ? 2 * (dimacs[i] - 1) : 2 * (-dimacs[i] - 1) + 1;
+        }
+        Arrays.sort(literals);
+        int size = 0;
+        for (int literal : literals) {
+            if (size > 0 && literals[size - 1] == literal) {
+                continue;
+            }
+            if (size > 0 && literals[size - 1] == (literal ^ 1)) {
+                return null; // x and ~x sort next to each other
+            }
+            literals[size++] = literal;
+        }
+        return Arrays.copyOf(literals, size);
+    }
+
+    private static int toDimacs(int literal) {
+        return (literal & 1) == 0 ? (literal >> 1) + 1 : -((literal >> 1) + 1);
+    }
+
+    // How much the clauses shrank, once simplify() has run
+    @Override
+    public String toString() {
+        if (result == null) {
+            return "Simplifier: " + clausesBefore + " clauses, not simplified yet";
+        }
+        long literalsAfter = 0;
+        BitSet varsAfter = new BitSet();
+        for (int[] clause : result) {
+            literalsAfter += clause.length;
+            for (int literal : clause) {
+                varsAfter.set(Math.abs(literal) - 1);
+            }
+        }
+        return "Simplified " + clausesBefore + " clauses, " + literalsBefore + " literals, " + varsBefore
+                + " variables into " + result.size() + " clauses, " + literalsAfter + " literals, " + varsAfter.cardinality()
+                + " variables (" + units.size + " units, " + tautologies + " tautologies, " + duplicates + " duplicates, "
+                + subsumed + " subsumed, " + strengthened + " strengthened, " + pure + " pure, " + eliminated + " eliminated)"
+                + (unsat ? ", no model" : "");
+    }
+}
@@ -0,0 +1,139 @@
+package me.discordbot;
+
+import java.util.*;
+
+/** Slicer keeps the part of a KB that can affect a query, its cone of influence, so an engine
+ * only works on that part. A typical query depends on a small corner of a large KB, and every
+ * symbol left out halves the work of the truth table.
+ *
+ * For a Horn KB the cone is found backwards from the query: the rules that conclude a symbol of
+ * the cone, and their premises, are in the cone. Whatever else the KB holds can never help to
+ * derive a symbol of the cone, so FC and BC give the same answer on the slice, although the
+ * symbols FC lists are then only the ones of the slice.
+ *
+ * For any other KB the cone is every sentence connected to the query through shared symbols.
+ * The sentences left out share no symbol with the slice or the query, so KB entails the query
+ * exactly when the slice does, as long as the sentences left out have a model. This is checked
+ * with DPLL, and if they have none the whole KB is kept, since it then entails everything. The
+ * count of "YES: count" is then over the symbols of the slice.*/
+public final class Slicer {
+    private Slicer() {
+    }
+
+    /** Keeps the rules and facts of a Horn KB that the query can be derived from.
+     * @param kb : The compiled Horn KB.
+     * @param query : The query needed for evaluation of entailment.
+     * @return a KB over the same symbol table with only the rules and facts of the cone*/
+    public static HornKB slice(HornKB kb, String query) {
+        int queryId = kb.symbols.lookup(query);
+        BitSet cone = new BitSet();
+        boolean[] kept = new boolean[kb.ruleCount()];
+        IntList stack = new IntList();
+        if (queryId >= 0) {
+            cone.set(queryId);
+            stack.add(queryId);
+        }
+        while (!stack.isEmpty()) {
+            int symbol = stack.pop();
+            for (int i = kb.concludingStart[symbol]; i < kb.concludingStart[symbol + 1]; i++) {
+                int r = kb.concludingRules[i];
+                kept[r] = true;
+                for (int j = kb.premiseStart[r]; j < kb.premiseStart[r + 1]; j++) {
+                    if (!cone.get(kb.premises[j])) {
+                        cone.set(kb.premises[j]);
+                        stack.add(kb.premises[j]);
+                    }
+                }
+            }
+        }
+
+        // Pack the rules of the cone, in the order of the KB
+        IntList premiseStart = new IntList();
+        IntList premises = new IntList();
+        IntList conclusions = new IntList();
+        premiseStart.add(0);
+        for (int r = 0; r < kept.length; r++) {
+            if (kept[r]) {
+                for (int j = kb.premiseStart[r]; j < kb.premiseStart[r + 1]; j++) {
+                    premises.add(kb.premises[j]);
+                }
+                premiseStart.add(premises.size);
+                conclusions.add(kb.conclusions[r]);
+            }
+        }
+        BitSet facts = (BitSet) kb.facts.clone();
+        facts.and(cone);
+        return new HornKB(kb.symbols, facts, premiseStart.toArray(), premises.toArray(), conclusions.toArray());
+    }
+
+    /** Keeps the sentences of a KB that are connected to the query through shared symbols.
+     * @param kb : A list of string sentences parsed.
+     * @param query : The query needed for evaluation of entailment.
+     * @return the sentences of the cone in the order of the KB, or the whole KB if the others have no model*/
+    public static List<String> slice(List<String> kb, String query) {
+        SymbolTable symbols = new SymbolTable();
+        List<String> sentences = new ArrayList<>();
+        List<BitSet> sentenceSymbols = new ArrayList<>();
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                sentences.add(sentence);
+                sentenceSymbols.add(CompiledSentence.compile(sentence, symbols).symbols());
+            }
+        }
+        BitSet querySymbols = CompiledSentence.compile(query, symbols).symbols();
+
+        // Index every sentence under each of its symbols
+        IntList[] occurrences = new IntList[symbols.size()];
+        for (int i = 0; i < sentences.size(); i++) {
+            BitSet ids = sentenceSymbols.get(i);
+            for (int s = ids.nextSetBit(0); s >= 0; s = ids.nextSetBit(s + 1)) {
+                if (occurrences[s] == null) {
+                    occurrences[s] = new IntList();
+                }
+                occurrences[s].add(i);
+            }
+        }
+
+        BitSet reached = (BitSet) querySymbols.clone();
+        boolean[] kept = new boolean[sentences.size()];
+        IntList stack = new IntList();
+        for (int s = querySymbols.nextSetBit(0); s >= 0; s = querySymbols.nextSetBit(s + 1)) {
+            stack.add(s);
+        }
+        while (!stack.isEmpty()) {
+            IntList using = occurrences[stack.pop()];
+            for (int k = 0; using != null && k < using.size; k++) {
+                int i = using.get(k);
+                if (kept[i]) {
+                    continue;
+                }
+                kept[i] = true;
+                BitSet ids = sentenceSymbols.get(i);
+                for (int s = ids.nextSetBit(0); s >= 0; s = ids.nextSetBit(s + 1)) {
+                    if (!reached.get(s)) {
+                        reached.set(s);
+                        stack.add(s);
+                    }
+                }
+            }
+        }
+
+        List<String> slice = new ArrayList<>();
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            (kept[i] ? slice : rest).add(sentences.get(i));
+        }
+        return rest.isEmpty() || isSatisfiable(rest) ? slice : kb;
+    }
+
+    // Tells if the sentences have a model, by DPLL on their Tseitin clauses
+    private static boolean isSatisfiable(List<String> sentences) {
+        SymbolTable symbols = new SymbolTable();
+        CNFConverter.Factory factory = new CNFConverter.Factory();
+        List<int[]> clauses = new ArrayList<>();
+        for (String sentence : sentences) {
+            clauses.addAll(CNFConverter.clausesOf(CNFConverter.parseExpression(sentence, symbols), symbols, true, factory));
+        }
+        return new DPLL(symbols.size(), clauses).solve();
+    }
+}
@@ -0,0 +1,245 @@
+package me.discordbot;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** StreamingParser reads a Horn KB file in a single pass over a memory-mapped FileChannel, so a
+ * TELL section of several gigabytes never has to fit in a String. The file is mapped one window
+ * at a time and scanned byte by byte: each clause is copied into a small scratch buffer, parsed
+ * there by the SentenceParser, and its symbols are interned straight from the bytes. Rules go
+ * into the packed arrays of the HornKB as they are read, so no String or Rule object is made per
+ * clause and memory stays bounded by the compiled KB plus the longest clause.
+ *
+ * The file has the same layout as for parseInputForChainingAlgorithm: a TELL line, the clauses
+ * separated by ';' on the lines after it, an ASK line and the query on the next non-empty line.*/
+public class StreamingParser {
+    private static final long WINDOW = 1L << 26; // bytes mapped at a time
+    private static final int CHUNK = 1 << 16;    // bytes copied out of the window at a time
+
+    // Where the scanner is in the file
+    private static final int HEADER = 0; // before the TELL line
+    private static final int TELL = 1;
+    private static final int ASK = 2;    // after the ASK line, waiting for the query
+    private static final int DONE = 3;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private final BitSet facts = new BitSet();
+    private final IntList premiseStart = new IntList();
+    private final IntList premises = new IntList();
+    private final IntList conclusions = new IntList();
+    private final SentenceParser parser = new SentenceParser(symbols);
+    private final IntList code = parser.code(); // the postfix program of the last clause
+
+    private byte[] clause = new byte[64]; // the clause or line being read
+    private int length;
+    private boolean lineHasClause;        // a ';' has been read on the current line
+    private boolean horn = true;          // every clause so far was a fact or a rule
+    private String notHorn;               // the first clause that was not, if any
+    private int notHornCount;
+    private int state = HEADER;
+
+    private HornKB kb;
+    private String query;
+    private long bytes;
+    private long nanos;
+
+    private StreamingParser() {
+        premiseStart.add(0);
+    }
+
+    /** Parses a Horn KB file.
+     * @param filename : The input file.
+     * @return the parser, holding the compiled KB, the query and the parse statistics*/
+    public static StreamingParser parse(String filename) throws IOException {
+        StreamingParser parser = new StreamingParser();
+        byte[] chunk = new byte[CHUNK];
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size && parser.state != DONE; position += WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                while (window.hasRemaining() && parser.state != DONE) {
+                    int n = Math.min(CHUNK, window.remaining());
+                    window.get(chunk, 0, n);
+                    parser.bytes += parser.scan(chunk, n);
+                }
+            }
+        }
+        parser.endLine(); // the last line may have no line break
+        parser.kb = new HornKB(parser.symbols, parser.facts,
+                parser.premiseStart.toArray(), parser.premises.toArray(), parser.conclusions.toArray());
+        parser.nanos = System.nanoTime() - start;
+        timer.stop();
+        return parser;
+    }
+
+    // The compiled KB, which leaves out any clause that is not a fact or a rule
+    public HornKB kb() {
+        return kb;
+    }
+
+    /** Returns the compiled KB of a file that must be Horn, for the engines that only take Horn
+     * KBs. They would otherwise answer from the part of the KB that is left.
+     * @return the compiled KB
+     * @throws IllegalArgumentException if a clause of the file is not a fact or a rule*/
+    public HornKB hornKB() {
+        if (!horn) {
+            throw new IllegalArgumentException("Not a Horn KB: " + notHornCount
+                    + " clause(s) are not a fact or a rule, the first one is: " + notHorn);
+        }
+        return kb;
+    }
+
+    // The query after the ASK line, or null if there is none
+    public String query() {
+        return query;
+    }
+
+    // This method tells if every clause was a Horn rule or a fact, rather than a general sentence
+    public boolean isHorn() {
+        return horn;
+    }
+
+    // The number of bytes scanned
+    public long bytes() {
+        return bytes;
+    }
+
+    // The parse throughput in megabytes per second
+    public double throughput() {
+        return bytes / 1e6 / Math.max(nanos / 1e9, 1e-9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Parsed %d bytes in %.1f ms (%.1f MB/s): %d symbols, %d rules, %d facts",
+                bytes, nanos / 1e6, throughput(), kb.symbolCount, kb.ruleCount(), kb.facts.cardinality());
+    }
+
+    // Feeds the bytes to the scanner until the query has been read, returning how many were used
+    private int scan(byte[] chunk, int n) {
+        int i = 0;
+        while (i < n && state != DONE) {
+            int start = i;
+            if (state == TELL) {
+                while (i < n && chunk[i] != ';' && chunk[i] != '\n') {
+                    i++;
+                }
+            } else {
+                while (i < n && chunk[i] != '\n') {
+                    i++;
+                }
+            }
+            append(chunk, start, i);
+            if (i < n) {
+                if (chunk[i] == '\n') {
+                    endLine();
+                } else {
+                    endClause();
+                    lineHasClause = true;
+                }
+                i++;
+            }
+        }
+        return i;
+    }
+
+    // Appends part of a clause or a line to the scratch buffer, which may span several chunks
+    private void append(byte[] chunk, int from, int to) {
+        if (length + (to - from) > clause.length) {
+            clause = Arrays.copyOf(clause, Math.max(clause.length * 2, length + (to - from)));
+        }
+        System.arraycopy(chunk, from, clause, length, to - from);
+        length += to - from;
+    }
+
+    private void endLine() {
+        switch (state) {
+            case HEADER:
+                if (isKeyword("TELL")) {
+                    state = TELL;
+                }
+                break;
+            case TELL:
+                if (!lineHasClause && isKeyword("ASK")) {
+                    state = ASK;
+                } else {
+                    endClause(); // a clause ends with its line even without a ';'
+                }
+                break;
+            case ASK:
+                int from = skipSpace(0);
+                int to = trimSpace(from, length);
+                if (from < to) {
+                    query = new String(clause, from, to - from, StandardCharsets.UTF_8);
+                    state = DONE;
+                }
+                break;
+            default:
+                break;
+        }
+        length = 0;
+        lineHasClause = false;
+    }
+
+    // Emits the clause in the scratch buffer as a rule or a fact, parsed by the same parser as every
+    // other sentence. Any other sentence is left out and marks the KB as not Horn.
+    private void endClause() {
+        if (skipSpace(0) < length) {
+            if (!parser.parseHorn(clause, 0, length)) {
+                if (horn) {
+                    int from = skipSpace(0);
+                    notHorn = new String(clause, from, trimSpace(from, length) - from, StandardCharsets.UTF_8);
+                    horn = false;
+                }
+                notHornCount++;
+            } else if (code.size == 1) {
+                facts.set(code.get(0));
+            } else {
+                for (int i = 0; i < code.size - 2; i++) {
+                    if (code.get(i) >= 0) {
+                        premises.add(code.get(i));
+                    }
+                }
+                conclusions.add(code.get(code.size - 2));
+                premiseStart.add(premises.size);
+            }
+        }
+        length = 0;
+    }
+
+    private boolean isKeyword(String keyword) {
+        int from = skipSpace(0);
+        int to = trimSpace(from, length);
+        if (to - from != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (clause[from + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipSpace(int from) {
+        while (from < length && Lexer.isSpace(clause[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimSpace(int from, int to) {
+        while (to > from && Lexer.isSpace(clause[to - 1])) {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,211 @@
+package me.discordbot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/** SymbolTable interns every propositional symbol to a dense integer id, starting at 0.
+ * The engines use the ids to index arrays and bitmaps instead of hashing the same strings
+ * over and over again.
+ *
+ * Symbols are indexed by their UTF-8 bytes in an open addressing table, so a parser can intern
+ * a symbol straight from the bytes it is scanning. The table is only made of arrays, so a
+ * snapshot can store it as is, and names are decoded from the bytes the first time they are
+ * asked for. Once nothing is interned into it anymore, a table can be read by any number of
+ * threads: two threads decoding the same name only store two equal strings.*/
+public class SymbolTable {
+    private String[] names = new String[16]; // null until decoded from the pool
+    private int size;
+    final BitSet auxiliary; // fresh symbols made up by the engines
+
+    byte[] pool = new byte[256];   // UTF-8 bytes of every symbol, back to back
+    int poolSize;
+    int[] offsets = new int[17];   // bytes of symbol s are pool[offsets[s] .. offsets[s + 1])
+    int[] hashes = new int[17];
+    int[] slots = new int[16];     // id + 1 of the symbol in each slot, 0 when empty
+
+    public SymbolTable() {
+        this.auxiliary = new BitSet();
+    }
+
+    /** Rebuilds a table from its arrays, as stored in a snapshot. Nothing is decoded until used.
+     * @param size : The number of symbols.
+     * @param pool : The bytes of the symbols.
+     * @param offsets : Where the bytes of each symbol start, with the pool size at the end.
+     * @param hashes : The hash of each symbol.
+     * @param slots : The open addressing table, whose length is a power of two.
+     * @param auxiliary : The symbols made up by fresh().*/
+    SymbolTable(int size, byte[] pool, int[] offsets, int[] hashes, int[] slots, BitSet auxiliary) {
+        this.size = size;
+        this.names = new String[Math.max(size, 16)];
+        this.pool = pool;
+        this.poolSize = offsets[size];
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.slots = slots;
+        this.auxiliary = auxiliary;
+    }
+
+    // This method returns a table with the same ids, which can be interned into without changing this one
+    public SymbolTable copy() {
+        return new SymbolTable(size, pool.clone(), offsets.clone(), hashes.clone(), slots.clone(), (BitSet) auxiliary.clone());
+    }
+
+    /** Returns a new symbol that is not part of the input, such as a Tseitin variable. Auxiliary
+     * symbols get ids like any other symbol but are left out of everything printed for the user.
+     * @return the id of the new symbol*/
+    public int fresh() {
+        int id = size;
+        // Not put in the index, so an input symbol of the same name stays distinct
+        add("$aux" + id, pool, 0, 0, 0);
+        auxiliary.set(id);
+        return id;
+    }
+
+    // This method tells if the symbol was made up by fresh()
+    public boolean isAuxiliary(int id) {
+        return auxiliary.get(id);
+    }
+
+    /** Returns the id of the symbol, giving it the next free id if it was never seen before.
+     * @param name : The propositional symbol.
+     * @return the id of the symbol*/
+    public int intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    /** Same as intern(String) for a symbol given as UTF-8 bytes, without making a String
+     * unless the symbol is new.
+     * @param bytes : The buffer holding the symbol.
+     * @param from : The index of the first byte of the symbol.
+     * @param to : The index after the last byte of the symbol.
+     * @return the id of the symbol*/
+    public int intern(byte[] bytes, int from, int to) {
+        int hash = hash(bytes, from, to);
+        int slot = find(bytes, from, to, hash);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        int id = size;
+        add(null, bytes, from, to, hash);
+        slots[slot] = id + 1;
+        if (2 * size > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /** Returns the id of the symbol, or -1 if the symbol is not in the table.
+     * @param name : The propositional symbol.
+     * @return the id of the symbol or -1*/
+    public int lookup(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return slots[find(bytes, 0, bytes.length, hash(bytes, 0, bytes.length))] - 1;
+    }
+
+    // This method returns the symbol that has been given the id
+    public String name(int id) {
+        if (id >= size) {
+            throw new IndexOutOfBoundsException("No symbol " + id);
+        }
+        String name = names[id];
+        if (name == null) {
+            name = auxiliary.get(id) ? "$aux" + id
+                    : new String(pool, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+            names[id] = name;
+        }
+        return name;
+    }
+
+    // This method returns the number of interned symbols
+    public int size() {
+        return size;
+    }
+
+    // This method returns the names of the symbols whose bits are set, in id order, without auxiliary symbols
+    public List<String> names(BitSet ids) {
+        List<String> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            if (!auxiliary.get(id)) {
+                result.add(name(id));
+            }
+        }
+        return result;
+    }
+
+    // Appends the symbol to the names and its bytes to the pool, without indexing it
+    private void add(String name, byte[] bytes, int from, int to, int hash) {
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+        }
+        names[id] = name;
+        if (id + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            hashes = Arrays.copyOf(hashes, offsets.length);
+        }
+        if (poolSize + (to - from) > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + (to - from)));
+        }
+        System.arraycopy(bytes, from, pool, poolSize, to - from);
+        poolSize += to - from;
+        offsets[id + 1] = poolSize;
+        hashes[id] = hash;
+    }
+
+    // Returns the slot holding the symbol, or the empty slot where it belongs
+    private int find(byte[] bytes, int from, int to, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0 || (hashes[id] == hash && matches(id, bytes, from, to))) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean matches(int id, byte[] bytes, int from, int to) {
+        int start = offsets[id];
+        if (offsets[id + 1] - start != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (pool[start++] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            if (auxiliary.get(id)) {
+                continue;
+            }
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    // FNV-1a over the bytes, with the high bits folded in since only the low bits pick the slot
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        BitSet all = new BitSet();
+        all.set(0, size);
+        return names(all).toString();
+    }
+}
@@ -1,8 +1,16 @@
 package me.discordbot;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public class TruthTable {
+    static final int MAX_SYMBOLS = 62; // a model is a long bitmask, and 2^n must still fit in a long
+    static final long PARALLEL_CHUNK = 1L << 14; // models a parallel worker enumerates without splitting further
+    static final long CANCEL_CHECK = (1L << 16) - 1; // models enumerated between two checks for cancellation
+
     /** Using the TT_Entails algorithm, this method returns "YES",
      *  followed by the number of every true kb models where query is also true,
      *  or "NO" if KB does not entail query.
@@ -10,120 +18,252 @@ public class TruthTable {
      * @param query: The query to check for entailment
      * @return a string that indicates if query is entailed by KB with YES and NO*/
     public static String evaluateTT(List<String> kb, String query) {
-        Set<String> symbols = extractPropositions(kb);
-        List<Map<String, Boolean>> models = generateModels(symbols);
+        // Every sentence is parsed once up front, the model loop only runs the compiled form
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        SymbolTable symbols = new SymbolTable();
+        List<CompiledSentence> sentences = compileKB(kb, symbols);
+        CompiledSentence compiledQuery = CompiledSentence.compile(query, symbols);
+        timer.stop();
+
+        int n = symbols.size();
+        if (n > MAX_SYMBOLS) {
+            return ModelCounter.evaluateCount(kb, query); // the same answer, without enumerating the models
+        }
 
-        int countModel = 0; // number of models where kb is true
-        int count = 0; // number of models where kb is true and query is also true
-        for (Map<String, Boolean> model : models) {
-            if (isKBTrue(kb, model)) {
+        long countModel = 0; // number of models where kb is true
+        long count = 0; // number of models where kb is true and query is also true
+
+        // Each model is the bitmask of the symbols that are true in it, so models are enumerated
+        // one at a time without allocating anything
+        long end = 1L << n; // 2^n
+        timer = Metrics.start(Metrics.Phase.ENUMERATE);
+        for (long model = 0; model < end; model++) {
+            if ((model & CANCEL_CHECK) == 0) {
+                Cancellation.check();
+            }
+            if (isKBTrue(sentences, model)) {
                 countModel++;
-               if (model.getOrDefault(query, false)) {
+                if (compiledQuery.evaluate(model)) {
                     count++;
-               }
+                }
             }
         }
+        Metrics.add(Metrics.Counter.MODELS_ENUMERATED, end);
+        timer.stop();
         // countModel == count means in all models where KB is true, we also have query is true
         return countModel == count ? "YES: " + count : "NO";
     }
 
-    // This method extracts the symbols from the clauses
-    private static Set<String> extractPropositions(List<String> kb) {
-        Set<String> propositions = new HashSet<>();
-        for (String clause : kb) {
-            clause = clause.replaceAll("[&||~=>;<=>]", " ");
-            propositions.addAll(Arrays.asList(clause.trim().split("\\s+")));
+    /** Same as evaluateTT for a KB given as clauses, such as the ones left by the Simplifier.
+     *  A clause is true in a model that sets one of its positive symbols or clears one of its
+     *  negative ones, so each clause is checked with two masks. The count is over every symbol
+     *  of the table, including the ones no clause holds anymore.
+     * @param symbols: The symbol table of the clauses, the symbols of the query are interned into it.
+     * @param kbClauses: The clauses of the KB, with literals written as in DIMACS.
+     * @param query: The query to check for entailment
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateTT(SymbolTable symbols, List<int[]> kbClauses, String query) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        CompiledSentence compiledQuery = CompiledSentence.compile(query, symbols);
+        timer.stop();
+
+        int n = symbols.size();
+        if (n > MAX_SYMBOLS) {
+            return ModelCounter.evaluateCount(symbols, kbClauses, query);
+        }
+        long[] positive = new long[kbClauses.size()];
+        long[] negative = new long[kbClauses.size()];
+        for (int i = 0; i < positive.length; i++) {
+            for (int literal : kbClauses.get(i)) {
+                if (literal > 0) {
+                    positive[i] |= 1L << (literal - 1);
+                } else {
+                    negative[i] |= 1L << (-literal - 1);
+                }
+            }
         }
-        return propositions;
+
+        long countModel = 0;
+        long count = 0;
+        long end = 1L << n;
+        timer = Metrics.start(Metrics.Phase.ENUMERATE);
+        models:
+        for (long model = 0; model < end; model++) {
+            for (int i = 0; i < positive.length; i++) {
+                if (((model & positive[i]) | (~model & negative[i])) == 0) {
+                    continue models;
+                }
+            }
+            countModel++;
+            if (compiledQuery.evaluate(model)) {
+                count++;
+            }
+        }
+        Metrics.add(Metrics.Counter.MODELS_ENUMERATED, end);
+        timer.stop();
+        return countModel == count ? "YES: " + count : "NO";
     }
 
-    // This method generates all the possible models using bitwise operations
-    private static List<Map<String, Boolean>> generateModels(Set<String> symbols) {
-        List<Map<String, Boolean>> models = new ArrayList<>();
+    /** Answers a batch of queries inside a single enumeration of the models. The symbols of all
+     *  queries are enumerated together, and each count is scaled back to the symbols of the KB and
+     *  that query, so every answer is the one evaluateTT gives for the query alone.
+     * @param kb: A list of string clauses parsed.
+     * @param queries: The queries to check for entailment
+     * @param results: Receives each query with its answer, in order, once the enumeration is done*/
+    public static void evaluateTTBatch(List<String> kb, List<String> queries, BiConsumer<String, String> results) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        SymbolTable symbols = new SymbolTable();
+        List<CompiledSentence> sentences = compileKB(kb, symbols);
+        int kbSymbols = symbols.size();
+        CompiledSentence[] compiledQueries = new CompiledSentence[queries.size()];
+        for (int i = 0; i < compiledQueries.length; i++) {
+            compiledQueries[i] = CompiledSentence.compile(queries.get(i), symbols);
+        }
+        timer.stop();
 
         int n = symbols.size();
-        String[] propArray = symbols.toArray(new String[0]);
-
-        for (int i = 0; i < (1 << n); i++) { // while i < 2^n
-            Map<String, Boolean> model = new HashMap<>();
-            for (int j = 0; j < n; j++) {
-                model.put(propArray[j], (i & (1 << j)) != 0); // for current model of i, assigns either true or false to j-th proposition
+        if (n > MAX_SYMBOLS) {
+            for (String query : queries) {
+                results.accept(query, ModelCounter.evaluateCount(kb, query));
             }
-            models.add(model);
+            return;
         }
-        return models;
-    }
 
-    // This method evaluates if KB is true
-    private static boolean isKBTrue(List<String> kb, Map<String, Boolean> model) {
-        for (String clause : kb) {
-            if (Boolean.FALSE.equals(evaluateClause(clause, model))) {
-                return false;
+        long[] counts = new long[compiledQueries.length];
+        boolean[] refuted = new boolean[compiledQueries.length]; // a KB model where the query is false was found
+        long end = 1L << n;
+        timer = Metrics.start(Metrics.Phase.ENUMERATE);
+        for (long model = 0; model < end; model++) {
+            if (isKBTrue(sentences, model)) {
+                for (int i = 0; i < compiledQueries.length; i++) {
+                    if (refuted[i]) {
+                        continue;
+                    }
+                    if (compiledQueries[i].evaluate(model)) {
+                        counts[i]++;
+                    } else {
+                        refuted[i] = true;
+                    }
+                }
             }
         }
-        return true;
-    }
+        Metrics.add(Metrics.Counter.MODELS_ENUMERATED, end);
+        timer.stop();
 
-    private static Boolean evaluateClause(String clause, Map<String, Boolean> model) {
-        // Split the clause by its logical connective "<=>" and evaluate each side of the clause
-        if (clause.contains("<=>")) {
-            String[] parts = clause.split("<=>");
-            boolean leftValue = evaluateExpression(parts[0].trim(), model);
-            boolean rightValue = evaluateExpression(parts[1].trim(), model);
-            return leftValue == rightValue;
+        for (int i = 0; i < compiledQueries.length; i++) {
+            // Symbols of the other queries do not affect this one, each of them doubled the count
+            BitSet extra = new BitSet();
+            extra.set(kbSymbols, n);
+            extra.andNot(compiledQueries[i].symbols());
+            results.accept(queries.get(i), refuted[i] ? "NO" : "YES: " + (counts[i] >> extra.cardinality()));
         }
+    }
 
-        // Split the clause by its logical connective "=>" and evaluate the expression on each side
-        if (clause.contains("=>")) {
-            String[] parts = clause.split("=>");
-            String premise = parts[0].trim();
-            String conclusion = parts.length > 1 ? parts[1].trim() : null;
+    /** Parallel version of evaluateTT. The 2^n models are split into ranges that are enumerated
+     *  on the common ForkJoinPool, and the counts of the ranges are added up, so the result is
+     *  the same as the one of evaluateTT.
+     * @param kb: A list of string clauses parsed.
+     * @param query: The query to check for entailment
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateTTParallel(List<String> kb, String query) {
+        return evaluateTTParallel(kb, query, ForkJoinPool.commonPool());
+    }
 
-            Boolean premiseValue = evaluateExpression(premise, model);
-            boolean conclusionValue = conclusion == null || evaluateExpression(conclusion, model);
+    /** Parallel version of evaluateTT that runs on the given pool.
+     * @param kb: A list of string clauses parsed.
+     * @param query: The query to check for entailment
+     * @param pool: The pool the model ranges are enumerated on
+     * @return a string that indicates if query is entailed by KB with YES and NO*/
+    public static String evaluateTTParallel(List<String> kb, String query, ForkJoinPool pool) {
+        Metrics.Timer timer = Metrics.start(Metrics.Phase.PARSE);
+        SymbolTable symbols = new SymbolTable();
+        List<CompiledSentence> sentences = compileKB(kb, symbols);
+        CompiledSentence compiledQuery = CompiledSentence.compile(query, symbols);
+        timer.stop();
 
-            return !premiseValue || conclusionValue;
+        int n = symbols.size();
+        if (n > MAX_SYMBOLS) {
+            return ModelCounter.evaluateCount(kb, query); // the same answer, without enumerating the models
         }
-        return evaluateExpression(clause, model);
+
+        AtomicBoolean counterexample = new AtomicBoolean(false);
+        timer = Metrics.start(Metrics.Phase.ENUMERATE);
+        long count = pool.invoke(new ModelRange(sentences, compiledQuery, 0, 1L << n, counterexample));
+        timer.stop();
+
+        // A model where the KB holds and the query fails means KB does not entail query
+        return counterexample.get() ? "NO" : "YES: " + count;
     }
 
-    private static Boolean evaluateExpression(String expression, Map<String, Boolean> model) {
-        // Split the expression by its logical connective "&" and evaluate each literal
-        if (expression.contains("&")) {
-            String[] parts = expression.split("&");
-            for (String part : parts) {
-                Boolean value = evaluateLiteral(part.trim(), model);
+    /** ModelRange enumerates the models in [from, to) and returns the number of models where
+     *  both the KB and the query are true. Once any range finds a model where the KB is true and
+     *  the query is false the answer is NO, so every other range stops early.*/
+    @SuppressWarnings("serial") // tasks are never serialized
+    private static class ModelRange extends RecursiveTask<Long> {
+        private final List<CompiledSentence> kb;
+        private final CompiledSentence query;
+        private final long from;
+        private final long to;
+        private final AtomicBoolean counterexample;
 
-                // If one of the part is false, return false immediately for the logical rule of "and"
-                if (!value) {
-                    return false;
-                }
+        ModelRange(List<CompiledSentence> kb, CompiledSentence query, long from, long to, AtomicBoolean counterexample) {
+            this.kb = kb;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.counterexample = counterexample;
+        }
+
+        @Override
+        protected Long compute() {
+            if (counterexample.get()) {
+                return 0L;
             }
 
-            return true;
-        } else if (expression.contains("||")) {
-            String[] parts = expression.split("\\|\\|");
-            for (String part : parts) {
-                Boolean value = evaluateLiteral(part.trim(), model);
+            if (to - from > PARALLEL_CHUNK) {
+                long middle = from + (to - from) / 2;
+                ModelRange left = new ModelRange(kb, query, from, middle, counterexample);
+                ModelRange right = new ModelRange(kb, query, middle, to, counterexample);
+                left.fork();
+                long rightCount = right.compute();
+                return left.join() + rightCount;
+            }
 
-                if (value) {
-                    return true; // OR: If any part is true, the expression is true
+            long count = 0;
+            for (long model = from; model < to; model++) {
+                if (isKBTrue(kb, model)) {
+                    if (!query.evaluate(model)) {
+                        counterexample.set(true);
+                        Metrics.add(Metrics.Counter.MODELS_ENUMERATED, model - from + 1);
+                        return 0L;
+                    }
+                    count++;
                 }
             }
-            return false;
-        } else {
-            return evaluateLiteral(expression.trim(), model);
+            Metrics.add(Metrics.Counter.MODELS_ENUMERATED, to - from);
+            return count;
         }
     }
 
-    // This method evaluates a single literal (e.g., A, ~A)
-    private static Boolean evaluateLiteral(String literal, Map<String, Boolean> model) {
-        if (literal.startsWith("~")) {
-            String prop = literal.substring(1); // Remove negation (~)
-            return model.getOrDefault(prop, false);
-        } else {
-            return model.getOrDefault(literal, false);
+    // This method compiles the sentences of the KB, skipping the blank ones left over by split(";")
+    static List<CompiledSentence> compileKB(List<String> kb, SymbolTable symbols) {
+        List<CompiledSentence> sentences = new ArrayList<>();
+        SentenceParser parser = new SentenceParser(symbols);
+        for (String sentence : kb) {
+            if (!sentence.trim().isEmpty()) {
+                sentences.add(CompiledSentence.compile(sentence, parser));
+            }
         }
+        return sentences;
     }
-}
 
+    // This method evaluates if KB is true
+    static boolean isKBTrue(List<CompiledSentence> kb, long model) {
+        for (CompiledSentence sentence : kb) {
+            if (!sentence.evaluate(model)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
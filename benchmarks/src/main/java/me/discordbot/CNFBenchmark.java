@@ -0,0 +1,42 @@
+package me.discordbot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** CNF conversion of nested biconditionals, whose CNF doubles with every level of nesting when
+ * Or is distributed over And, against the Tseitin encoding that stays linear.*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CNFBenchmark {
+    @Param({"4", "8", "12"})
+    public int depth;
+
+    private String sentence;
+    private CNFConverter.Expression expression;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sentence = KBGenerator.nestedBiconditional(depth);
+        expression = CNFConverter.parseExpression(sentence);
+    }
+
+    @Benchmark
+    public CNFConverter.Expression parse() {
+        return CNFConverter.parseExpression(sentence);
+    }
+
+    @Benchmark
+    public CNFConverter.Expression toCNF() {
+        return CNFConverter.toCNF(expression);
+    }
+
+    @Benchmark
+    public Object tseitin() {
+        return CNFConverter.toClausesTseitin(expression, new SymbolTable(), true);
+    }
+}
@@ -0,0 +1,42 @@
+package me.discordbot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Forward and backward chaining on the Horn shapes of KBGenerator. The KB is parsed once per
+ * trial, so only the inference itself is measured.*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainingBenchmark {
+    @Param({KBGenerator.CHAIN, KBGenerator.FAN_IN, KBGenerator.DIAMOND})
+    public String shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private HornKB kb;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StreamingParser parser = StreamingParser.parse(KBGenerator.temporary(shape, size, 42).toString());
+        kb = parser.kb();
+        query = parser.query();
+    }
+
+    @Benchmark
+    public String forwardChaining() {
+        return ForwardChaining.evaluateFC(kb, query);
+    }
+
+    @Benchmark
+    public String backwardChaining() {
+        return BackwardChaining.evaluateBC(kb, query);
+    }
+}
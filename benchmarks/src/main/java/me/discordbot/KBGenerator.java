@@ -0,0 +1,157 @@
+package me.discordbot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/** KBGenerator writes synthetic knowledge bases in the TELL / ASK input format, streaming them
+ * clause by clause so they can reach millions of clauses. Random shapes take a seed, so the
+ * same parameters always give the same KB.
+ *
+ * Usage: java -cp benchmarks.jar me.discordbot.KBGenerator <shape> <size> <file> [seed]*/
+public final class KBGenerator {
+    // The shapes, by name, as used in the @Param of the benchmarks
+    public static final String CHAIN = "chain";
+    public static final String FAN_IN = "fanin";
+    public static final String DIAMOND = "diamond";
+    public static final String RANDOM_CNF = "kcnf";
+    public static final String BICONDITIONAL = "iff";
+
+    static final int FAN_IN_WIDTH = 64;     // premises per rule of the fan-in shape
+    static final int DIAMOND_WIDTH = 32;    // nodes per layer of the diamond shape
+    static final double PHASE_TRANSITION = 4.26; // clauses per variable where random 3-CNF is hardest
+
+    private KBGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: KBGenerator <chain|fanin|diamond|kcnf|iff> <size> <file> [seed]");
+            return;
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        write(Paths.get(args[2]), args[0], Integer.parseInt(args[1]), seed);
+    }
+
+    /** Writes a KB of the given shape to a file.
+     * @param file : The file to write.
+     * @param shape : One of the shape names.
+     * @param size : The number of rules, or of variables for kcnf, or the nesting depth for iff.
+     * @param seed : The seed of the random shapes.*/
+    public static void write(Path file, String shape, int size, long seed) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            switch (shape) {
+                case CHAIN:
+                    hornChain(out, size);
+                    break;
+                case FAN_IN:
+                    fanIn(out, size, FAN_IN_WIDTH);
+                    break;
+                case DIAMOND:
+                    diamond(out, Math.max(1, size / DIAMOND_WIDTH), DIAMOND_WIDTH);
+                    break;
+                case RANDOM_CNF:
+                    randomCNF(out, size, (int) Math.round(size * PHASE_TRANSITION), 3, seed);
+                    break;
+                case BICONDITIONAL:
+                    nestedBiconditional(out, size);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown shape " + shape);
+            }
+        }
+    }
+
+    /** Writes a KB of the given shape to a temporary file that is deleted when the JVM exits.
+     * @return the file*/
+    public static Path temporary(String shape, int size, long seed) throws IOException {
+        Path file = Files.createTempFile("kb-" + shape + "-" + size + "-", ".txt");
+        file.toFile().deleteOnExit();
+        write(file, shape, size, seed);
+        return file;
+    }
+
+    /** A chain s0 => s1 => ... => sn with s0 as the only fact, asking for sn. Every rule fires
+     * and backward chaining goes as deep as the chain is long.*/
+    public static void hornChain(Writer out, int length) throws IOException {
+        out.write("TELL\ns0; ");
+        for (int i = 0; i < length; i++) {
+            out.write("s" + i + " => s" + (i + 1) + "; ");
+        }
+        out.write("\nASK\ns" + length + "\n");
+    }
+
+    /** Rules with many premises: the facts x0 .. x(width - 1) and the previous conclusion all imply
+     * the next conclusion, asking for the last one. Every fact is a premise of every rule.*/
+    public static void fanIn(Writer out, int rules, int width) throws IOException {
+        StringBuilder premises = new StringBuilder();
+        out.write("TELL\n");
+        for (int j = 0; j < width; j++) {
+            out.write("x" + j + "; ");
+            premises.append("x").append(j).append(" & ");
+        }
+        out.write("c0; ");
+        for (int i = 0; i < rules; i++) {
+            out.write(premises + "c" + i + " => c" + (i + 1) + "; ");
+        }
+        out.write("\nASK\nc" + rules + "\n");
+    }
+
+    /** Layers of a DAG where each node has two parents in the layer above, so the number of paths
+     * from the last layer back to the facts grows exponentially while the number of rules does not.*/
+    public static void diamond(Writer out, int layers, int width) throws IOException {
+        out.write("TELL\n");
+        for (int j = 0; j < width; j++) {
+            out.write("d0_" + j + "; ");
+        }
+        for (int i = 1; i <= layers; i++) {
+            for (int j = 0; j < width; j++) {
+                out.write("d" + (i - 1) + "_" + j + " & d" + (i - 1) + "_" + ((j + 1) % width) + " => d" + i + "_" + j + "; ");
+            }
+        }
+        out.write("\nASK\nd" + layers + "_0\n");
+    }
+
+    /** Random k-CNF: each clause has k distinct variables with random signs. With as many clauses
+     * as PHASE_TRANSITION times the variables, about half of the KBs are satisfiable.*/
+    public static void randomCNF(Writer out, int variables, int clauses, int k, long seed) throws IOException {
+        Random random = new Random(seed);
+        int[] picked = new int[k];
+        out.write("TELL\n");
+        for (int c = 0; c < clauses; c++) {
+            out.write("(");
+            for (int i = 0; i < k; i++) {
+                picked[i] = random.nextInt(variables);
+                for (int j = 0; j < i; j++) {
+                    if (picked[j] == picked[i]) {
+                        picked[i] = random.nextInt(variables);
+                        j = -1; // check again from the start
+                    }
+                }
+                out.write((i > 0 ? " || " : "") + (random.nextBoolean() ? "~" : "") + "v" + picked[i]);
+            }
+            out.write("); ");
+        }
+        out.write("\nASK\nv0 || v1\n");
+    }
+
+    /** One sentence ((v0 <=> v1) <=> v2) <=> ... of the given depth. Its CNF doubles in size with
+     * every level when Or is distributed over And.*/
+    public static void nestedBiconditional(Writer out, int depth) throws IOException {
+        out.write("TELL\n" + nestedBiconditional(depth) + ";\nASK\nv0\n");
+    }
+
+    // The sentence written by nestedBiconditional
+    public static String nestedBiconditional(int depth) {
+        StringBuilder sentence = new StringBuilder("v0");
+        for (int i = 1; i <= depth; i++) {
+            sentence.insert(0, "(").append(" <=> v").append(i).append(")");
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package me.discordbot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing Horn KB files of every shape, with the streaming parser and with the map-based
+ * parser the chaining engines used before.*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({KBGenerator.CHAIN, KBGenerator.FAN_IN, KBGenerator.DIAMOND})
+    public String shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private String file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = KBGenerator.temporary(shape, size, 42).toString();
+    }
+
+    @Benchmark
+    public HornKB streaming() throws IOException {
+        return StreamingParser.parse(file).kb();
+    }
+
+    @Benchmark
+    public Map<String, Object> chainingInput() throws IOException {
+        return InferenceEngine.parseInputForChainingAlgorithm(file);
+    }
+}
@@ -0,0 +1,45 @@
+package me.discordbot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Model checking random 3-CNF KBs at the phase transition, where the number of models to
+ * enumerate doubles with every variable.*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TruthTableBenchmark {
+    @Param({"12", "16", "20"})
+    public int variables;
+
+    @Param({"42"})
+    public long seed;
+
+    private List<String> kb;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Map<String, String> data = InferenceEngine.parseInput(KBGenerator.temporary(KBGenerator.RANDOM_CNF, variables, seed).toString());
+        kb = Arrays.asList(data.get("KB").split(";"));
+        query = data.get("Query");
+    }
+
+    @Benchmark
+    public String truthTable() {
+        return TruthTable.evaluateTT(kb, query);
+    }
+
+    @Benchmark
+    public String parallelTruthTable() {
+        return TruthTable.evaluateTTParallel(kb, query);
+    }
+}
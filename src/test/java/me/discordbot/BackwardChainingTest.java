@@ -0,0 +1,46 @@
+package me.discordbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class BackwardChainingTest {
+
+    /** A batch answers every query the same as evaluateBC asked on its own, symbols that are not
+     * in the KB included.*/
+    @Test
+    void batchMatchesSingleQueries() {
+        Random random = new Random(7);
+        for (int t = 0; t < 3000; t++) {
+            int n = 3 + random.nextInt(8);
+            HornKB kb = RandomKB.horn(random, n, n + random.nextInt(2 * n));
+
+            List<String> queries = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                queries.add("s" + random.nextInt(n + 1));
+            }
+            List<String> answers = new ArrayList<>();
+            BackwardChaining.evaluateBCBatch(kb, queries, (query, answer) -> answers.add(answer));
+
+            for (int j = 0; j < queries.size(); j++) {
+                assertEquals(BackwardChaining.evaluateBC(kb, queries.get(j)), answers.get(j), "query " + queries.get(j));
+            }
+        }
+    }
+
+    /** A query asked again in the batch keeps its own proof, even after another query proved its
+     * premises first.*/
+    @Test
+    void batchRepeatsQueries() {
+        SymbolTable symbols = new SymbolTable();
+        HornKB kb = HornKB.compile(Set.of("p"), List.of(new Rule(List.of("p"), "q", symbols), new Rule(List.of("q"), "r", symbols)));
+
+        List<String> answers = new ArrayList<>();
+        BackwardChaining.evaluateBCBatch(kb, List.of("r", "q", "r"), (query, answer) -> answers.add(answer));
+        assertEquals(List.of("YES: [p, q, r]", "YES: [p, q]", "YES: [p, q, r]"), answers);
+    }
+}
@@ -0,0 +1,35 @@
+package me.discordbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class ForwardChainingTest {
+
+    /** inferParallel derives the same closure as inferAgenda(kb, -1), on KBs small enough for one
+     * worker and on KBs whose rounds are split across the workers.*/
+    @Test
+    void parallelMatchesSequential() {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int t = 0; t < 500; t++) {
+                int n = t % 50 == 0 ? 4000 : 3 + random.nextInt(20);
+                HornKB kb = RandomKB.horn(random, n, 4 * n);
+
+                BitSet closure = ForwardChaining.inferAgenda(kb, -1);
+                assertEquals(closure, ForwardChaining.inferParallel(kb, pool));
+
+                String query = "s" + random.nextInt(n + 1);
+                int queryId = kb.symbols.lookup(query);
+                String expected = queryId >= 0 && closure.get(queryId) ? "YES: " + kb.symbols.names(closure) : "NO";
+                assertEquals(expected, ForwardChaining.evaluateFCParallel(kb, query, pool), "query " + query);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
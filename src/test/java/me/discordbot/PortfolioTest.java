@@ -0,0 +1,37 @@
+package me.discordbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PortfolioTest {
+
+    /** evaluateAuto gives the same YES or NO as DPLL, whichever engine it chose or won the race,
+     * on generic KBs and on Horn KBs.*/
+    @Test
+    void autoMatchesDPLL() {
+        Random random = new Random(3);
+        for (int t = 0; t < 1500; t++) {
+            int n = 2 + random.nextInt(t % 3 == 0 ? 30 : 10);
+            int m = 1 + random.nextInt(8);
+            boolean horn = random.nextInt(3) == 0;
+
+            List<String> kb = new ArrayList<>();
+            for (int j = 0; j < m; j++) {
+                if (!horn) {
+                    kb.add(RandomKB.sentence(random, 1 + random.nextInt(3), n));
+                } else if (random.nextBoolean()) {
+                    kb.add("v" + random.nextInt(n));
+                } else {
+                    kb.add("v" + random.nextInt(n) + " & v" + random.nextInt(n) + " => v" + random.nextInt(n));
+                }
+            }
+            String query = horn ? "v" + random.nextInt(n) : RandomKB.sentence(random, random.nextInt(3), n);
+
+            assertEquals(DPLL.evaluateDPLL(kb, query, true), Portfolio.evaluateAuto(kb, query), kb + " ? " + query);
+        }
+    }
+}
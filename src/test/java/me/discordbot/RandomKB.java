@@ -0,0 +1,63 @@
+package me.discordbot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/** RandomKB makes the random knowledge bases the tests compare the engines on. A seeded Random
+ * is passed in, so a failing case can be made again.*/
+final class RandomKB {
+    private RandomKB() {
+    }
+
+    /** Makes a Horn KB over the symbols s0 .. s(n-1), with about a quarter of them as facts.
+     * @param random : The source of the KB.
+     * @param n : The number of symbols.
+     * @param ruleCount : The number of rules, each with one to three premises.
+     * @return the compiled Horn KB*/
+    static HornKB horn(Random random, int n, int ruleCount) {
+        Set<String> facts = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(4) == 0) {
+                facts.add("s" + i);
+            }
+        }
+
+        SymbolTable symbols = new SymbolTable();
+        List<Rule> rules = new ArrayList<>();
+        for (int k = 0; k < ruleCount; k++) {
+            List<String> premises = new ArrayList<>();
+            int m = 1 + random.nextInt(3);
+            for (int j = 0; j < m; j++) {
+                premises.add("s" + random.nextInt(n));
+            }
+            rules.add(new Rule(premises, "s" + random.nextInt(n), symbols));
+        }
+        return HornKB.compile(facts, rules);
+    }
+
+    /** Makes a sentence over the symbols v0 .. v(n-1) with every connective of the language.
+     * @param random : The source of the sentence.
+     * @param depth : The most connectives nested in the sentence.
+     * @param n : The number of symbols.
+     * @return the sentence*/
+    static String sentence(Random random, int depth, int n) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return "v" + random.nextInt(n);
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+                return "~(" + sentence(random, depth - 1, n) + ")";
+            case 1:
+                return "(" + sentence(random, depth - 1, n) + " & " + sentence(random, depth - 1, n) + ")";
+            case 2:
+                return "(" + sentence(random, depth - 1, n) + " || " + sentence(random, depth - 1, n) + ")";
+            case 3:
+                return "(" + sentence(random, depth - 1, n) + " => " + sentence(random, depth - 1, n) + ")";
+            default:
+                return "(" + sentence(random, depth - 1, n) + " <=> " + sentence(random, depth - 1, n) + ")";
+        }
+    }
+}
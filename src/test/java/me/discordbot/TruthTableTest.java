@@ -0,0 +1,36 @@
+package me.discordbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class TruthTableTest {
+
+    /** evaluateTTParallel gives the same answer and model count as evaluateTT, on KBs small
+     * enough for one range and on KBs whose models are split across the workers.*/
+    @Test
+    void parallelMatchesSequential() {
+        Random random = new Random(5);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int t = 0; t < 300; t++) {
+                int n = t % 4 == 0 ? 15 + random.nextInt(4) : 2 + random.nextInt(10);
+                int m = t % 4 == 0 ? n : 1 + random.nextInt(6);
+
+                List<String> kb = new ArrayList<>();
+                for (int j = 0; j < m; j++) {
+                    kb.add(RandomKB.sentence(random, 1 + random.nextInt(3), n));
+                }
+                String query = RandomKB.sentence(random, random.nextInt(3), n);
+
+                assertEquals(TruthTable.evaluateTT(kb, query), TruthTable.evaluateTTParallel(kb, query, pool), kb + " ? " + query);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}